@@ -0,0 +1,43 @@
+package com.example.imageeditor;
+
+import android.os.Debug;
+
+/**
+ * Счетчик байт, выделенных текущим потоком. Работает через счетчики аллокаций ART
+ * ({@link Debug#getThreadAllocSize()}); если среда их не ведет, {@link #isSupported()} возвращает false.
+ */
+@SuppressWarnings("deprecation")
+public final class AllocationCounter {
+    private AllocationCounter() {
+    }
+
+    public static AllocationCounter forCurrentThread() {
+        return new AllocationCounter();
+    }
+
+    public boolean isSupported() {
+        long allocated = measure(() -> {
+            Object[] probe = new Object[16];
+            probe[0] = probe;
+        });
+        return allocated > 0;
+    }
+
+    // Байты, выделенные action, за вычетом накладных расходов самого замера
+    public long measure(Runnable action) {
+        Runnable empty = () -> { };
+        Debug.startAllocCounting();
+        try {
+            Debug.resetThreadAllocSize();
+            empty.run();
+            long baseline = Debug.getThreadAllocSize();
+
+            Debug.resetThreadAllocSize();
+            action.run();
+            long allocated = Debug.getThreadAllocSize();
+            return Math.max(0, allocated - baseline);
+        } finally {
+            Debug.stopAllocCounting();
+        }
+    }
+}
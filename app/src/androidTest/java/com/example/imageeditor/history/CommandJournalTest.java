@@ -0,0 +1,218 @@
+package com.example.imageeditor.history;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.example.imageeditor.models.DrawingLine;
+import com.example.imageeditor.models.DrawingObject;
+import com.example.imageeditor.models.DrawingRectangle;
+import com.example.imageeditor.models.DrawingScene;
+import com.example.imageeditor.utils.ProjectStore;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+@RunWith(AndroidJUnit4.class)
+public class CommandJournalTest {
+    private static final long CLOSE_TIMEOUT_MS = 10_000;
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("session", ".journal");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    private static DrawingLine stroke(int seed, int points) {
+        DrawingLine line = new DrawingLine(seed, seed, 0xFF000000, 5);
+        for (int i = 1; i < points; i++) {
+            line.addPoint(seed + i * 2f, seed + (float) Math.sin(i) * 10f);
+        }
+        return line;
+    }
+
+    private static void assertSameScene(DrawingScene expected, DrawingScene actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            DrawingObject a = expected.get(i);
+            DrawingObject b = actual.get(i);
+            assertEquals(a.getClass(), b.getClass());
+            assertEquals(a.getId(), b.getId());
+            if (a instanceof DrawingLine) {
+                assertEquals(((DrawingLine) a).getPointCount(), ((DrawingLine) b).getPointCount());
+            }
+        }
+    }
+
+    private void close(CommandJournal journal) throws InterruptedException {
+        journal.close(false);
+        journal.awaitClosed(CLOSE_TIMEOUT_MS);
+    }
+
+    @Test
+    public void replay_rebuildsSceneAndHistory() throws Exception {
+        DrawingScene scene = new DrawingScene();
+        HistoryManager history = new HistoryManager();
+        CommandJournal journal = CommandJournal.create(file, "content://media/7", null);
+        history.setJournal(journal);
+
+        for (int i = 0; i < 5; i++) {
+            history.executeCommand(new DrawCommand(scene, stroke(i * 10, 20)));
+        }
+        DrawingRectangle rectangle = new DrawingRectangle(1, 2, 0xFF000000, 3);
+        rectangle.updateEndPoint(30, 40);
+        history.executeCommand(new DrawCommand(scene, rectangle));
+        history.executeCommand(new DrawCommand(scene, scene.get(1), 1));
+        history.undo();
+        history.undo();
+        history.redo();
+        close(journal);
+
+        CommandJournal.Replay replay = CommandJournal.read(file);
+        assertEquals("content://media/7", replay.getBaseImageUri());
+        assertNull(replay.getProject());
+        assertEquals(10, replay.getEntryCount());
+
+        DrawingScene restored = new DrawingScene();
+        HistoryManager restoredHistory = new HistoryManager();
+        replay.applyTo(null, restored, restoredHistory);
+        assertSameScene(scene, restored);
+        assertEquals(history.getUndoCount(), restoredHistory.getUndoCount());
+        assertEquals(history.getRedoCount(), restoredHistory.getRedoCount());
+
+        // Отмена после восстановления дает то же, что в исходной сессии
+        history.undo();
+        restoredHistory.undo();
+        assertSameScene(scene, restored);
+    }
+
+    @Test
+    public void read_dropsTornTail_andResumeAppendsAfterIt() throws Exception {
+        DrawingScene scene = new DrawingScene();
+        HistoryManager history = new HistoryManager();
+        CommandJournal journal = CommandJournal.create(file, "file:///a.jpg", ByteBuffer.wrap(new byte[]{1, 2, 3}));
+        history.setJournal(journal);
+        history.executeCommand(new DrawCommand(scene, stroke(0, 10)));
+        history.executeCommand(new DrawCommand(scene, stroke(5, 10)));
+        close(journal);
+
+        // Сбой посреди записи: последняя запись оборвана
+        try (RandomAccessFile store = new RandomAccessFile(file, "rw")) {
+            store.setLength(store.length() - 7);
+        }
+        CommandJournal.Replay replay = CommandJournal.read(file);
+        assertEquals(1, replay.getEntryCount());
+        assertEquals(3, replay.getProject().remaining());
+
+        DrawingScene restored = new DrawingScene();
+        HistoryManager restoredHistory = new HistoryManager();
+        replay.applyTo(null, restored, restoredHistory);
+        assertEquals(1, restored.size());
+
+        CommandJournal resumed = CommandJournal.resume(file, replay);
+        restoredHistory.setJournal(resumed);
+        restoredHistory.executeCommand(new DrawCommand(restored, stroke(9, 10)));
+        restoredHistory.undo();
+        close(resumed);
+
+        CommandJournal.Replay again = CommandJournal.read(file);
+        assertEquals(3, again.getEntryCount());
+        DrawingScene rebuilt = new DrawingScene();
+        again.applyTo(null, rebuilt, new HistoryManager());
+        assertSameScene(restored, rebuilt);
+    }
+
+    // Процесс завершен в фоне: журнал дописан, но не удален
+    private void journalKilledSession(int strokes) throws Exception {
+        DrawingScene scene = new DrawingScene();
+        HistoryManager history = new HistoryManager();
+        CommandJournal journal = CommandJournal.create(file, "content://media/3", null);
+        history.setJournal(journal);
+        for (int i = 0; i < strokes; i++) {
+            history.executeCommand(new DrawCommand(scene, stroke(i, 10)));
+        }
+        close(journal);
+    }
+
+    @Test
+    public void processRestart_restoresSession() throws Exception {
+        assertFalse(ProjectStore.shouldRestoreSession(file, false, true));
+
+        journalKilledSession(3);
+        assertTrue(ProjectStore.shouldRestoreSession(file, false, true));
+        // Обычный запуск редактора: о восстановлении спрашивает MainActivity
+        assertFalse(ProjectStore.shouldRestoreSession(file, false, false));
+        assertTrue(ProjectStore.shouldRestoreSession(file, true, false));
+    }
+
+    @Test
+    public void processRestart_resumesJournalInsteadOfOverwriting() throws Exception {
+        journalKilledSession(3);
+        long length = file.length();
+
+        // Новый журнал поверх прерванной сессии не создается
+        try {
+            CommandJournal.create(file, "content://media/4", null);
+            fail("Журнал прерванной сессии перезаписан");
+        } catch (IOException expected) {
+            // журнал остается для восстановления
+        }
+        assertEquals(length, file.length());
+
+        // Путь пересозданной активности: повтор правок и продолжение того же журнала
+        CommandJournal.Replay replay = CommandJournal.read(file);
+        assertEquals("content://media/3", replay.getBaseImageUri());
+        DrawingScene scene = new DrawingScene();
+        HistoryManager history = new HistoryManager();
+        replay.applyTo(null, scene, history);
+        assertEquals(3, scene.size());
+
+        CommandJournal resumed = CommandJournal.resume(file, replay);
+        history.setJournal(resumed);
+        history.executeCommand(new DrawCommand(scene, stroke(7, 10)));
+        close(resumed);
+
+        assertEquals(4, CommandJournal.read(file).getEntryCount());
+    }
+
+    @Test(expected = IOException.class)
+    public void read_rejectsForeignFile() throws IOException {
+        try (RandomAccessFile store = new RandomAccessFile(file, "rw")) {
+            store.writeLong(42);
+            store.writeLong(43);
+        }
+        CommandJournal.read(file);
+    }
+
+    // Поток правок быстрее записи на диск: все записи доходят до файла пакетами
+    @Test
+    public void rapidStrokes_allReachDisk() throws Exception {
+        final int strokes = 5_000;
+        DrawingScene scene = new DrawingScene();
+        HistoryManager history = new HistoryManager();
+        CommandJournal journal = CommandJournal.create(file, "file:///a.jpg", null);
+        history.setJournal(journal);
+
+        for (int i = 0; i < strokes; i++) {
+            history.executeCommand(new DrawCommand(scene, stroke(i % 500, 100)));
+        }
+        close(journal);
+
+        assertFalse(journal.isFailed());
+        assertEquals(strokes, journal.getWrittenRecords());
+        assertEquals(strokes, CommandJournal.read(file).getEntryCount());
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.imageeditor.history;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.example.imageeditor.models.DrawingObject;
+import com.example.imageeditor.models.DrawingRectangle;
+import com.example.imageeditor.models.DrawingScene;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Iterator;
+import java.util.ListIterator;
+
+import static org.junit.Assert.*;
+
+@RunWith(AndroidJUnit4.class)
+public class DrawCommandTest {
+    private static final int UNDO_DEPTH = 500;
+
+    // Сцена, которая считает обращения к своим элементам и поиски объекта по списку
+    private static class CountingScene extends DrawingScene {
+        int reads;
+        int scans;
+
+        @Override
+        public DrawingObject get(int index) {
+            reads++;
+            return super.get(index);
+        }
+
+        @Override
+        public int indexOf(Object object) {
+            scans++;
+            return super.indexOf(object);
+        }
+
+        @Override
+        public int lastIndexOf(Object object) {
+            scans++;
+            return super.lastIndexOf(object);
+        }
+
+        @Override
+        public boolean remove(Object object) {
+            scans++;
+            return super.remove(object);
+        }
+
+        @Override
+        public Iterator<DrawingObject> iterator() {
+            scans++;
+            return super.iterator();
+        }
+
+        @Override
+        public ListIterator<DrawingObject> listIterator(int index) {
+            scans++;
+            return super.listIterator(index);
+        }
+    }
+
+    // Обращения к элементам сцены из sceneSize объектов за UNDO_DEPTH отмен и повторов
+    private static int undoRedoReads(int sceneSize) {
+        CountingScene scene = new CountingScene();
+        HistoryManager history = new HistoryManager();
+        for (int i = 0; i < sceneSize; i++) {
+            history.executeCommand(new DrawCommand(scene, new DrawingRectangle(i, i, 0xFF000000, 5)));
+        }
+        scene.reads = 0;
+        scene.scans = 0;
+
+        for (int i = 0; i < UNDO_DEPTH; i++) {
+            history.undo();
+        }
+        for (int i = 0; i < UNDO_DEPTH; i++) {
+            history.redo();
+        }
+        assertEquals(sceneSize, scene.size());
+        // Команда помнит позицию объекта и не ищет его по списку
+        assertEquals(0, scene.scans);
+        return scene.reads;
+    }
+
+    // Стоимость undo/redo штриха не зависит от размера сцены
+    @Test
+    public void undoRedo_doesNotScanScene() {
+        assertEquals(undoRedoReads(1_000), undoRedoReads(50_000));
+    }
+
+    @Test
+    public void undoRedo_restoresOrderAndIds() {
+        DrawingScene scene = new DrawingScene();
+        HistoryManager history = new HistoryManager();
+        DrawingRectangle first = new DrawingRectangle(0, 0, 0xFF000000, 5);
+        DrawingRectangle second = new DrawingRectangle(1, 1, 0xFF000000, 5);
+        history.executeCommand(new DrawCommand(scene, first));
+        history.executeCommand(new DrawCommand(scene, second));
+        long secondId = second.getId();
+
+        history.executeCommand(new DrawCommand(scene, first, 0));
+        assertEquals(1, scene.size());
+        assertSame(second, scene.get(0));
+
+        history.undo();
+        history.undo();
+        assertEquals(1, scene.size());
+        assertSame(first, scene.get(0));
+
+        history.redo();
+        history.redo();
+        assertEquals(1, scene.size());
+        assertSame(second, scene.get(0));
+        assertEquals(secondId, second.getId());
+        assertNotEquals(first.getId(), second.getId());
+    }
+}
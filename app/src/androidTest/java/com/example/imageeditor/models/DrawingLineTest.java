@@ -0,0 +1,197 @@
+package com.example.imageeditor.models;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.PathMeasure;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.example.imageeditor.AllocationCounter;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class DrawingLineTest {
+    private static final int FRAMES = 10_000;
+    private static final int CANVAS_SIZE = 256;
+
+    // Канвас, запоминающий переданный в drawPath путь
+    private static class RecordingCanvas extends Canvas {
+        Path lastPath;
+
+        @Override
+        public void drawPath(Path path, Paint paint) {
+            lastPath = path;
+        }
+    }
+
+    @Test
+    public void draw_reusesCachedPathWhileStrokeGrows() {
+        DrawingLine line = new DrawingLine(0, 0, 0xFF000000, 5);
+        RecordingCanvas canvas = new RecordingCanvas();
+
+        line.draw(canvas);
+        Path firstFramePath = canvas.lastPath;
+        assertNotNull(firstFramePath);
+
+        for (int i = 1; i <= 2000; i++) {
+            line.addPoint(i, i);
+            line.draw(canvas);
+            assertSame(firstFramePath, canvas.lastPath);
+        }
+    }
+
+    @Test
+    public void draw_doesNotAllocateRegardlessOfStrokeLength() {
+        AllocationCounter counter = AllocationCounter.forCurrentThread();
+        assumeTrue(counter.isSupported());
+
+        DrawingLine shortLine = lineWithPoints(10);
+        DrawingLine longLine = lineWithPoints(2000);
+        // Канвас поверх настоящей битмапы: кадр проходит через растеризатор, а не заглушку
+        Canvas canvas = new Canvas(Bitmap.createBitmap(CANVAS_SIZE, CANVAS_SIZE, Bitmap.Config.ARGB_8888));
+
+        // Прогрев, чтобы JIT не исказил замер
+        drawFrames(shortLine, canvas);
+        drawFrames(longLine, canvas);
+
+        long shortBytes = counter.measure(() -> drawFrames(shortLine, canvas));
+        long longBytes = counter.measure(() -> drawFrames(longLine, canvas));
+
+        // Меньше байта на кадр: отрисовка не выделяет память ни для короткого, ни для длинного штриха
+        assertTrue("short stroke allocated " + shortBytes + " bytes", shortBytes < FRAMES);
+        assertTrue("long stroke allocated " + longBytes + " bytes", longBytes < FRAMES);
+    }
+
+    @Test
+    public void addPoint_growsPackedBufferAndKeepsAllPoints() {
+        DrawingLine line = lineWithPoints(1000);
+
+        assertEquals(1000, line.getPointCount());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, line.getPointX(i), 0f);
+            assertEquals(i % 50, line.getPointY(i), 0f);
+        }
+        assertEquals(999f, line.getEndX(), 0f);
+    }
+
+    @Test
+    public void addPoints_appendsWholeBatch() {
+        DrawingLine line = new DrawingLine(0, 0, 0xFF000000, 5);
+        float[] batch = new float[200];
+        for (int i = 0; i < 100; i++) {
+            batch[i * 2] = i + 1;
+            batch[i * 2 + 1] = -(i + 1);
+        }
+
+        line.addPoints(batch, 100);
+
+        assertEquals(101, line.getPointCount());
+        assertEquals(50f, line.getPointX(50), 0f);
+        assertEquals(-50f, line.getPointY(50), 0f);
+        assertEquals(100f, line.getEndX(), 0f);
+        assertEquals(-100f, line.getEndY(), 0f);
+    }
+
+    @Test
+    public void containsPoint_checksSegmentsOfPackedPoints() {
+        DrawingLine line = new DrawingLine(0, 0, 0xFF000000, 5);
+        line.addPoint(100, 0);
+        line.addPoint(100, 100);
+
+        assertTrue(line.containsPoint(50, 3));
+        assertTrue(line.containsPoint(104, 60));
+        assertFalse(line.containsPoint(50, 60));
+    }
+
+    @Test
+    public void simplify_keepsDrawnStrokeWithinToleranceOfSamples() {
+        float tolerance = 0.5f;
+        // Плотные сэмплы вдоль угла и дуги: после прореживания от них остаются редкие точки
+        float[] samples = new float[2 * 400];
+        int count = 0;
+        for (int i = 0; i <= 100; i++) {
+            samples[count * 2] = i;
+            samples[count * 2 + 1] = 0;
+            count++;
+        }
+        for (int i = 1; i <= 100; i++) {
+            samples[count * 2] = 100 + i * 0.001f;
+            samples[count * 2 + 1] = i;
+            count++;
+        }
+        for (int i = 1; i <= 150; i++) {
+            double angle = Math.PI * i / 150;
+            samples[count * 2] = (float) (150 - 50 * Math.cos(angle));
+            samples[count * 2 + 1] = (float) (100 + 50 * Math.sin(angle));
+            count++;
+        }
+
+        DrawingLine line = new DrawingLine(samples[0], samples[1], 0xFF000000, 5);
+        for (int i = 1; i < count; i++) {
+            line.addPoint(samples[i * 2], samples[i * 2 + 1]);
+        }
+        line.simplify(tolerance);
+        assertTrue(line.getPointCount() < count / 4);
+
+        RecordingCanvas canvas = new RecordingCanvas();
+        line.draw(canvas);
+        float step = 0.1f;
+        float[] drawn = flatten(canvas.lastPath, step);
+
+        // Расстояние от каждого исходного сэмпла до того, что нарисовано после отпускания пальца
+        for (int i = 0; i < count; i++) {
+            float best = Float.MAX_VALUE;
+            for (int j = 0; j < drawn.length; j += 2) {
+                float dx = drawn[j] - samples[i * 2];
+                float dy = drawn[j + 1] - samples[i * 2 + 1];
+                best = Math.min(best, dx * dx + dy * dy);
+            }
+            float distance = (float) Math.sqrt(best);
+            assertTrue("sample " + i + " is " + distance + " px from the drawn stroke",
+                    distance <= tolerance + step);
+        }
+    }
+
+    private static DrawingLine lineWithPoints(int count) {
+        DrawingLine line = new DrawingLine(0, 0, 0xFF000000, 5);
+        for (int i = 1; i < count; i++) {
+            line.addPoint(i, i % 50);
+        }
+        return line;
+    }
+
+    // Точки пути с шагом step по длине всех его контуров
+    private static float[] flatten(Path path, float step) {
+        PathMeasure measure = new PathMeasure(path, false);
+        float[] position = new float[2];
+        float[] out = new float[64];
+        int size = 0;
+        do {
+            float length = measure.getLength();
+            for (float distance = 0; distance <= length; distance += step) {
+                measure.getPosTan(distance, position, null);
+                if (size + 2 > out.length) {
+                    out = Arrays.copyOf(out, out.length * 2);
+                }
+                out[size++] = position[0];
+                out[size++] = position[1];
+            }
+        } while (measure.nextContour());
+        return Arrays.copyOf(out, size);
+    }
+
+    private static void drawFrames(DrawingLine line, Canvas canvas) {
+        for (int i = 0; i < FRAMES; i++) {
+            line.draw(canvas);
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.example.imageeditor.models;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@RunWith(AndroidJUnit4.class)
+public class ProjectFileTest {
+    private static final float[] IDENTITY = {1, 0, 0, 0, 1, 0, 0, 0, 1};
+    // Точки хранятся с фиксированной точкой 1/64 пикселя
+    private static final float POINT_EPSILON = 1f / 128;
+
+    private static DrawingLine line(float x, float y, int points) {
+        DrawingLine line = new DrawingLine(x, y, 0xFF000000, 5);
+        for (int i = 1; i < points; i++) {
+            line.addPoint(x + i * 3.3f, y + (float) Math.sin(i) * 20f);
+        }
+        return line;
+    }
+
+    private static ProjectFile project(List<DrawingObject> objects) {
+        return new ProjectFile("content://media/1", 4000, 3000, 3000, 4000,
+                new float[]{0, -1, 3000, 1, 0, 0, 0, 0, 1}, objects);
+    }
+
+    @Test
+    public void roundTrip_preservesHeaderAndObjects() throws IOException {
+        DrawingScene scene = new DrawingScene();
+        DrawingLine stroke = line(10.25f, 20.5f, 50);
+        DrawingRectangle rectangle = new DrawingRectangle(5, 6, 0xFF000000, 3);
+        rectangle.updateEndPoint(100, 200);
+        DrawingText text = new DrawingText(40, 50, "Привет", "serif", 2, 36, 0xFF000000);
+        scene.append(stroke);
+        scene.append(rectangle);
+        scene.append(text);
+        scene.removeAt(1);
+        scene.append(rectangle);
+
+        ProjectFile decoded = ProjectFile.decode(project(new ArrayList<>(scene)).encode());
+
+        assertEquals("content://media/1", decoded.getBaseImageUri());
+        assertEquals(4000, decoded.getBaseWidth());
+        assertEquals(3000, decoded.getBaseHeight());
+        assertEquals(3000, decoded.getImageWidth());
+        assertEquals(4000, decoded.getImageHeight());
+        assertArrayEquals(new float[]{0, -1, 3000, 1, 0, 0, 0, 0, 1}, decoded.getImageTransform(), 0f);
+
+        List<DrawingObject> objects = decoded.getObjects();
+        assertEquals(3, objects.size());
+        assertEquals(stroke.getId(), objects.get(0).getId());
+        assertEquals(text.getId(), objects.get(1).getId());
+        assertEquals(rectangle.getId(), objects.get(2).getId());
+
+        DrawingLine decodedLine = (DrawingLine) objects.get(0);
+        assertEquals(stroke.getPointCount(), decodedLine.getPointCount());
+        for (int i = 0; i < stroke.getPointCount(); i++) {
+            assertEquals(stroke.getPointX(i), decodedLine.getPointX(i), POINT_EPSILON);
+            assertEquals(stroke.getPointY(i), decodedLine.getPointY(i), POINT_EPSILON);
+        }
+
+        DrawingText decodedText = (DrawingText) objects.get(1);
+        assertEquals("Привет", decodedText.getText());
+        assertEquals("serif", decodedText.getFontFamily());
+        assertEquals(2, decodedText.getTextStyle());
+        assertEquals(36, decodedText.getTextSize());
+
+        DrawingRectangle decodedRectangle = (DrawingRectangle) objects.get(2);
+        assertEquals(100, decodedRectangle.getEndX(), 0f);
+        assertEquals(200, decodedRectangle.getEndY(), 0f);
+    }
+
+    @Test
+    public void decode_skipsUnknownRecordTypes() throws IOException {
+        List<DrawingObject> objects = new ArrayList<>();
+        objects.add(new DrawingCircle(1, 1, 0xFF000000, 2));
+        objects.add(line(0, 0, 10));
+        ByteBuffer data = project(objects).encode();
+
+        // Запись из будущей версии: тип неизвестен, но длина позволяет ее пропустить
+        ByteBuffer header = data.duplicate();
+        ProjectFile.readHeader(header);
+        data.put(header.position(), (byte) 99);
+
+        List<DrawingObject> decoded = ProjectFile.decode(data).getObjects();
+        assertEquals(1, decoded.size());
+        assertTrue(decoded.get(0) instanceof DrawingLine);
+        assertEquals(10, ((DrawingLine) decoded.get(0)).getPointCount());
+    }
+
+    @Test
+    public void encodeObjects_givesIndependentCopies() throws IOException {
+        DrawingLine stroke = line(10, 20, 30);
+        List<DrawingObject> objects = new ArrayList<>();
+        objects.add(stroke);
+        objects.add(new DrawingCircle(1, 1, 0xFF000000, 2));
+        ByteBuffer data = ProjectFile.encodeObjects(objects);
+
+        // Изменение исходного штриха после снимка не затрагивает копию
+        stroke.addPoint(500, 500);
+        List<DrawingObject> copies = ProjectFile.decodeObjects(data);
+        assertEquals(2, copies.size());
+        assertNotSame(stroke, copies.get(0));
+        assertEquals(stroke.getId(), copies.get(0).getId());
+        assertEquals(30, ((DrawingLine) copies.get(0)).getPointCount());
+        assertTrue(copies.get(1) instanceof DrawingCircle);
+    }
+
+    @Test
+    public void writeObject_usesProjectRecordFormat() throws IOException {
+        DrawingLine stroke = line(100, 100, 1000);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ProjectFile.writeObject(new DataOutputStream(bytes), stroke);
+        // Выгрузка истории и журнал пишут точки так же сжато, как файл проекта
+        assertTrue("Размер записи: " + bytes.size(), bytes.size() < 1000 * 5);
+
+        DrawingLine decoded = (DrawingLine) ProjectFile.readObject(
+                new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(stroke.getId(), decoded.getId());
+        assertEquals(stroke.getPointCount(), decoded.getPointCount());
+        for (int i = 0; i < stroke.getPointCount(); i++) {
+            assertEquals(stroke.getPointX(i), decoded.getPointX(i), POINT_EPSILON);
+            assertEquals(stroke.getPointY(i), decoded.getPointY(i), POINT_EPSILON);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void decode_rejectsForeignData() throws IOException {
+        ProjectFile.decode(ByteBuffer.wrap(new byte[]{1, 2, 3, 4, 5, 6, 7, 8}));
+    }
+
+    @Test
+    public void linePoints_areDeltaPacked() throws IOException {
+        List<DrawingObject> objects = new ArrayList<>();
+        objects.add(line(100, 100, 1000));
+        int size = project(objects).encode().remaining();
+        // Соседние точки близки: разность координаты умещается в 2 байта вместо 4 байт float
+        assertTrue("Размер проекта: " + size, size < 1000 * 5);
+    }
+
+    @Test
+    public void decode_tenThousandStrokes() throws IOException {
+        List<DrawingObject> objects = new ArrayList<>();
+        DrawingScene scene = new DrawingScene();
+        for (int i = 0; i < 10_000; i++) {
+            scene.append(line(i % 1000, i / 10f, 40));
+        }
+        objects.addAll(scene);
+        ByteBuffer data = new ProjectFile("file:///base.jpg", 4000, 3000, 4000, 3000, IDENTITY, objects).encode();
+
+        ProjectFile decoded = ProjectFile.decode(data.duplicate());
+
+        assertEquals(10_000, decoded.getObjects().size());
+        assertEquals(objects.get(9_999).getId(), decoded.getObjects().get(9_999).getId());
+    }
+
+    @Test
+    public void map_keepsStrokePointsInFileUntilTouched() throws IOException {
+        List<DrawingObject> objects = new ArrayList<>();
+        DrawingLine near = line(10, 10, 30);
+        DrawingLine far = line(2000, 2000, 30);
+        objects.add(near);
+        objects.add(far);
+        objects.add(new DrawingRectangle(1, 2, 0xFF000000, 3));
+        ByteBuffer data = project(objects).encode();
+
+        File file = File.createTempFile("project", ProjectFile.EXTENSION);
+        try {
+            ProjectFile.write(file, data);
+            ProjectFile mapped = ProjectFile.map(file);
+            DrawingLine mappedNear = (DrawingLine) mapped.getObjects().get(0);
+            DrawingLine mappedFar = (DrawingLine) mapped.getObjects().get(1);
+            assertTrue(mappedNear.isMapped());
+            assertTrue(mappedFar.isMapped());
+            assertEquals(30, mappedFar.getPointCount());
+
+            // Повторное сохранение копирует закодированные точки без чтения
+            assertEquals(data, mapped.encode());
+            assertTrue(mappedFar.isMapped());
+
+            // Касание вдали от границ штриха не читает его точки
+            assertFalse(mappedFar.containsPoint(5000, 5000));
+            assertTrue(mappedFar.isMapped());
+
+            assertTrue(mappedNear.containsPoint(10, 10));
+            assertFalse(mappedNear.isMapped());
+            for (int i = 0; i < near.getPointCount(); i++) {
+                assertEquals(near.getPointX(i), mappedNear.getPointX(i), POINT_EPSILON);
+                assertEquals(near.getPointY(i), mappedNear.getPointY(i), POINT_EPSILON);
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void map_tenThousandStrokes_keepsPointsOutOfHeap() throws IOException {
+        List<DrawingObject> objects = new ArrayList<>();
+        DrawingScene scene = new DrawingScene();
+        for (int i = 0; i < 10_000; i++) {
+            scene.append(line(i % 1000, i / 10f, 200));
+        }
+        objects.addAll(scene);
+
+        File file = File.createTempFile("project", ProjectFile.EXTENSION);
+        try {
+            new ProjectFile("file:///base.jpg", 4000, 3000, 4000, 3000, IDENTITY, objects).save(file);
+            ProjectFile mapped = ProjectFile.map(file);
+            ProjectFile decoded = ProjectFile.load(file);
+            assertEquals(10_000, mapped.getObjects().size());
+
+            // Ни один штрих не разобран: в куче только объекты, без массивов точек
+            long mappedBytes = 0;
+            long decodedBytes = 0;
+            for (int i = 0; i < 10_000; i++) {
+                DrawingLine line = (DrawingLine) mapped.getObjects().get(i);
+                assertTrue(line.isMapped());
+                assertEquals(200, line.getPointCount());
+                mappedBytes += line.estimateBytes();
+                decodedBytes += decoded.getObjects().get(i).estimateBytes();
+            }
+            assertTrue(mappedBytes + " / " + decodedBytes, mappedBytes * 10 < decodedBytes);
+        } finally {
+            file.delete();
+        }
+    }
+}
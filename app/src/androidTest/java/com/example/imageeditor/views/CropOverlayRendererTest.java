@@ -0,0 +1,59 @@
+package com.example.imageeditor.views;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.RectF;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.example.imageeditor.AllocationCounter;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class CropOverlayRendererTest {
+    private static final int FRAMES = 10_000;
+    private static final int CANVAS_SIZE = 256;
+
+    @Test
+    public void draw_doesNotAllocatePerFrame() {
+        AllocationCounter counter = AllocationCounter.forCurrentThread();
+        assumeTrue(counter.isSupported());
+
+        CropOverlayRenderer renderer = new CropOverlayRenderer(30);
+        // Канвас поверх настоящей битмапы: кадр проходит через растеризатор, а не заглушку
+        Canvas canvas = new Canvas(Bitmap.createBitmap(CANVAS_SIZE, CANVAS_SIZE, Bitmap.Config.ARGB_8888));
+        RectF imageBounds = new RectF(0, 0, 1000, 800);
+        RectF cropRect = new RectF(100, 100, 500, 400);
+
+        // Прогрев, чтобы JIT не исказил замер
+        drawFrames(renderer, canvas, imageBounds, cropRect);
+
+        long allocated = counter.measure(() -> drawFrames(renderer, canvas, imageBounds, cropRect));
+
+        assertTrue("crop overlay allocated " + allocated + " bytes", allocated < FRAMES);
+    }
+
+    @Test
+    public void findHandleAt_returnsCornerAndSideHandles() {
+        CropOverlayRenderer renderer = new CropOverlayRenderer(30);
+        RectF cropRect = new RectF(100, 100, 500, 400);
+
+        assertEquals(0, renderer.findHandleAt(cropRect, 105, 95));
+        assertEquals(3, renderer.findHandleAt(cropRect, 500, 400));
+        assertEquals(5, renderer.findHandleAt(cropRect, 300, 420));
+        assertEquals(7, renderer.findHandleAt(cropRect, 490, 250));
+        assertEquals(-1, renderer.findHandleAt(cropRect, 300, 250));
+    }
+
+    private static void drawFrames(CropOverlayRenderer renderer, Canvas canvas, RectF imageBounds, RectF cropRect) {
+        for (int i = 0; i < FRAMES; i++) {
+            cropRect.left = 100 + (i & 15);
+            renderer.draw(canvas, imageBounds, cropRect);
+        }
+    }
+}
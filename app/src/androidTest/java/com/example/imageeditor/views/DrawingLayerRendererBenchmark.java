@@ -0,0 +1,149 @@
+package com.example.imageeditor.views;
+
+import android.graphics.Matrix;
+import android.graphics.Rect;
+import android.graphics.RecordingCanvas;
+import android.graphics.RenderNode;
+import android.os.Build;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.example.imageeditor.models.DrawingCircle;
+import com.example.imageeditor.models.DrawingLine;
+import com.example.imageeditor.models.DrawingRectangle;
+import com.example.imageeditor.models.DrawingScene;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+// Стоимость кадра на UI-потоке для 1000 зафиксированных объектов: кадр записывается в RenderNode,
+// как это делает View при аппаратном ускорении. Сравниваются кадр без изменений сцены и кадр
+// после добавления объекта, когда битмапный слой перерисовывается, а список отображения перезаписывается
+@RunWith(AndroidJUnit4.class)
+public class DrawingLayerRendererBenchmark {
+    private static final String TAG = "RendererBenchmark";
+    private static final int OBJECT_COUNT = 1_000;
+    private static final int IMAGE_SIZE = 2048;
+    private static final int FRAMES = 60;
+
+    private static DrawingScene createScene() {
+        Random random = new Random(7);
+        DrawingScene scene = new DrawingScene();
+        for (int i = 0; i < OBJECT_COUNT; i++) {
+            float x = random.nextFloat() * IMAGE_SIZE;
+            float y = random.nextFloat() * IMAGE_SIZE;
+            int color = 0xFF000000 | random.nextInt(0xFFFFFF);
+            switch (i % 3) {
+                case 0:
+                    DrawingLine line = new DrawingLine(x, y, color, 5);
+                    for (int p = 0; p < 30; p++) {
+                        x += random.nextFloat() * 20 - 10;
+                        y += random.nextFloat() * 20 - 10;
+                        line.addPoint(x, y);
+                    }
+                    scene.append(line);
+                    break;
+                case 1:
+                    DrawingRectangle rectangle = new DrawingRectangle(x, y, color, 5);
+                    rectangle.updateEndPoint(x + 80, y + 60);
+                    scene.append(rectangle);
+                    break;
+                default:
+                    DrawingCircle circle = new DrawingCircle(x, y, color, 5);
+                    circle.updateEndPoint(x + 70, y + 70);
+                    scene.append(circle);
+                    break;
+            }
+        }
+        return scene;
+    }
+
+    // Среднее время кадра (нс); при changeScene перед каждым кадром в сцену добавляется объект
+    private static double measureFrames(DrawingLayerRenderer renderer, DrawingScene scene, boolean changeScene) {
+        RenderNode frame = new RenderNode("frame");
+        frame.setPosition(0, 0, 1080, 1920);
+        Matrix imageMatrix = new Matrix();
+        imageMatrix.setScale(0.5f, 0.5f);
+        Rect visibleArea = new Rect(0, 0, IMAGE_SIZE, IMAGE_SIZE);
+
+        long total = 0;
+        for (int i = 0; i < FRAMES; i++) {
+            if (changeScene) {
+                DrawingRectangle added = new DrawingRectangle(i * 10, i * 10, 0xFFFF0000, 5);
+                added.updateEndPoint(i * 10 + 40, i * 10 + 40);
+                scene.append(added);
+                renderer.onObjectAppended(added);
+            }
+            long start = System.nanoTime();
+            RecordingCanvas canvas = frame.beginRecording();
+            renderer.draw(canvas, imageMatrix, IMAGE_SIZE, IMAGE_SIZE, visibleArea);
+            frame.endRecording();
+            total += System.nanoTime() - start;
+        }
+        frame.discardDisplayList();
+        return (double) total / FRAMES;
+    }
+
+    @Test
+    public void displayList_isCheaperThanBitmapLayer_whenSceneChanges() {
+        assumeTrue(Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q);
+
+        RenderMetrics metrics = new RenderMetrics();
+        DrawingScene bitmapScene = createScene();
+        BitmapLayerRenderer bitmapRenderer = new BitmapLayerRenderer(bitmapScene, metrics);
+        DrawingScene displayListScene = createScene();
+        DisplayListLayerRenderer displayListRenderer = new DisplayListLayerRenderer(displayListScene, metrics);
+        try {
+            // Прогрев: первая запись и первая растеризация слоя
+            measureFrames(bitmapRenderer, bitmapScene, false);
+            measureFrames(displayListRenderer, displayListScene, false);
+
+            double bitmapSteady = measureFrames(bitmapRenderer, bitmapScene, false);
+            double displayListSteady = measureFrames(displayListRenderer, displayListScene, false);
+
+            // В битмапный слой новый объект дорисовывается, поэтому для честного сравнения
+            // изменение сцены моделируется полной инвалидацией, как после undo
+            long bitmapChanged = 0;
+            long displayListChanged = 0;
+            RenderNode frame = new RenderNode("frame");
+            Matrix imageMatrix = new Matrix();
+            Rect visibleArea = new Rect(0, 0, IMAGE_SIZE, IMAGE_SIZE);
+            for (int i = 0; i < FRAMES; i++) {
+                bitmapRenderer.invalidate();
+                long start = System.nanoTime();
+                RecordingCanvas canvas = frame.beginRecording(IMAGE_SIZE, IMAGE_SIZE);
+                bitmapRenderer.draw(canvas, imageMatrix, IMAGE_SIZE, IMAGE_SIZE, visibleArea);
+                frame.endRecording();
+                bitmapChanged += System.nanoTime() - start;
+
+                displayListRenderer.invalidate();
+                start = System.nanoTime();
+                canvas = frame.beginRecording(IMAGE_SIZE, IMAGE_SIZE);
+                displayListRenderer.draw(canvas, imageMatrix, IMAGE_SIZE, IMAGE_SIZE, visibleArea);
+                frame.endRecording();
+                displayListChanged += System.nanoTime() - start;
+            }
+            frame.discardDisplayList();
+            double displayListAppend = measureFrames(displayListRenderer, displayListScene, true);
+
+            Log.i(TAG, String.format("Кадр без изменений: битмапа %.0f мкс, список %.0f мкс",
+                    bitmapSteady / 1000, displayListSteady / 1000));
+            Log.i(TAG, String.format("Кадр после изменения сцены: битмапа %.0f мкс, список %.0f мкс (добавление %.0f мкс)",
+                    bitmapChanged / 1000.0 / FRAMES, displayListChanged / 1000.0 / FRAMES, displayListAppend / 1000));
+
+            // Перезапись списка - только команды, растеризация 1000 объектов на CPU заметно дороже
+            assertTrue("Перезапись списка отображения не дешевле перерисовки битмапы: "
+                            + displayListChanged + " нс против " + bitmapChanged + " нс",
+                    displayListChanged < bitmapChanged);
+        } finally {
+            bitmapRenderer.release();
+            displayListRenderer.release();
+        }
+    }
+}
@@ -1,13 +1,11 @@
 package com.example.imageeditor;
 
-import android.content.ContentValues;
 import android.graphics.Bitmap;
 import android.graphics.Color;
 import android.graphics.Typeface;
 import android.graphics.drawable.GradientDrawable;
 import android.net.Uri;
 import android.os.Bundle;
-import android.provider.MediaStore;
 import android.text.Editable;
 import android.text.TextWatcher;
 import android.util.Log;
@@ -19,18 +17,28 @@ import android.widget.Button;
 import android.widget.CheckBox;
 import android.widget.EditText;
 import android.widget.LinearLayout;
+import android.widget.ProgressBar;
 import android.widget.SeekBar;
 import android.widget.Spinner;
 import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
-
-import com.example.imageeditor.utils.BitmapUtils;
+import androidx.lifecycle.ViewModelProvider;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.example.imageeditor.history.CommandJournal;
+import com.example.imageeditor.models.ProjectFile;
+import com.example.imageeditor.utils.BitmapPool;
+import com.example.imageeditor.utils.ImageExporter;
+import com.example.imageeditor.utils.ImageLoader;
+import com.example.imageeditor.utils.ProjectStore;
+import com.example.imageeditor.utils.TiledImageSource;
+import com.example.imageeditor.views.EditorSession;
 import com.example.imageeditor.views.EditorView;
 import com.example.imageeditor.views.ToolbarView;
 
-import java.io.OutputStream;
-
 public class EditorActivity extends AppCompatActivity {
     private static final String TAG = "EditorActivity";
 
@@ -68,6 +76,19 @@ public class EditorActivity extends AppCompatActivity {
 
     private EditorMode currentMode = EditorMode.NONE;
 
+    private ImageLoader.LoadHandle imageLoadHandle;
+
+    // Исходное изображение сессии и имя ее файла проекта (задается при первом сохранении или открытии)
+    private String imageUriString;
+    private String projectName;
+    // Проект, который применяется после загрузки его исходного изображения
+    private ProjectFile pendingProject;
+    // Журнал автосохранения сессии и прерванная сессия, которая повторяется после загрузки изображения
+    private CommandJournal journal;
+    private CommandJournal.Replay pendingReplay;
+    // Сессия редактора, которая переживает пересоздание активности
+    private EditorViewModel viewModel;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -110,20 +131,42 @@ public class EditorActivity extends AppCompatActivity {
         setupFontSpinner();
         updateColorIndicators();
 
-        // Загрузка изображения
-        String imageUriString = getIntent().getStringExtra("imageUri");
-        if (imageUriString != null) {
-            Uri imageUri = Uri.parse(imageUriString);
-            try {
-                Bitmap bitmap = BitmapUtils.getBitmapFromUri(this, imageUri);
-                editorView.setImageBitmap(bitmap);
-                editorView.post(() -> editorView.fitImageToView());
-                Log.d(TAG, "Изображение успешно загружено: " + imageUri);
-            } catch (Exception e) {
-                Log.e(TAG, "Ошибка загрузки изображения", e);
-                Toast.makeText(this, "Ошибка загрузки изображения", Toast.LENGTH_SHORT).show();
-                finish();
+        // Активность пересоздана (например, при повороте экрана): изображение уже загружено,
+        // View подключается к сохраненной сессии без повторного декодирования
+        viewModel = new ViewModelProvider(this).get(EditorViewModel.class);
+        EditorSession session = viewModel.getSession();
+        if (session != null && session.hasImage()) {
+            editorView.attachSession(session);
+            imageUriString = viewModel.getImageUriString();
+            projectName = viewModel.getProjectName();
+            journal = viewModel.getJournal();
+            if (editorView.isCropModeActive()) {
+                currentMode = EditorMode.CROP;
+                btnConfirmCrop.setVisibility(View.VISIBLE);
             }
+            hideAllPanels();
+            return;
+        }
+        // Состояние есть, а сессии в памяти нет: процесс был завершен в фоне
+        boolean processRestarted = savedInstanceState != null && session == null;
+        if (session == null) {
+            session = new EditorSession(getCacheDir());
+            viewModel.setSession(session);
+        }
+        editorView.attachSession(session);
+
+        // Загрузка изображения или проекта
+        String projectPath = getIntent().getStringExtra("projectPath");
+        imageUriString = getIntent().getStringExtra("imageUri");
+        // После завершения процесса правки продолжаются из журнала, а не с чистого изображения
+        if (ProjectStore.shouldRestoreSession(ProjectStore.getJournalFile(this),
+                getIntent().getBooleanExtra("restoreSession", false), processRestarted)) {
+            restoreSession();
+        } else if (projectPath != null) {
+            openProject(new File(projectPath));
+        } else if (imageUriString != null) {
+            Uri imageUri = Uri.parse(imageUriString);
+            loadImage(imageUri);
         } else {
             Log.w(TAG, "URI изображения отсутствует");
             Toast.makeText(this, "Изображение не выбрано", Toast.LENGTH_SHORT).show();
@@ -134,6 +177,106 @@ public class EditorActivity extends AppCompatActivity {
         hideAllPanels();
     }
 
+    // Декодирование идет в фоне: сначала показывается превью, затем рабочая битмапа
+    private void loadImage(Uri imageUri) {
+        imageLoadHandle = ImageLoader.load(this, imageUri, new ImageLoader.Callback() {
+            @Override
+            public void onPreviewLoaded(Bitmap preview, int width, int height) {
+                editorView.setPreviewBitmap(preview, width, height);
+            }
+
+            @Override
+            public void onImageLoaded(Bitmap bitmap, TiledImageSource tiledSource) {
+                imageLoadHandle = null;
+                editorView.setImageBitmap(bitmap);
+                // Если рабочая битмапа уменьшена при декодировании, детали при увеличении берутся из тайлов
+                editorView.setTiledImageSource(tiledSource);
+                Log.d(TAG, "Изображение успешно загружено: " + imageUri);
+                boolean projectApplied = false;
+                if (pendingProject != null) {
+                    projectApplied = editorView.applyProject(pendingProject);
+                    if (!projectApplied) {
+                        Toast.makeText(EditorActivity.this, "Не удалось восстановить правки проекта", Toast.LENGTH_SHORT).show();
+                    }
+                    pendingProject = null;
+                }
+                startJournal(projectApplied);
+            }
+
+            @Override
+            public void onLoadFailed(Exception error) {
+                imageLoadHandle = null;
+                Log.e(TAG, "Ошибка загрузки изображения", error);
+                Toast.makeText(EditorActivity.this, "Ошибка загрузки изображения", Toast.LENGTH_SHORT).show();
+                finish();
+            }
+        });
+    }
+
+    // Файл проекта читается в фоне, затем загружается исходное изображение, на которое он ссылается
+    private void openProject(File file) {
+        String name = file.getName();
+        projectName = name.endsWith(ProjectFile.EXTENSION)
+                ? name.substring(0, name.length() - ProjectFile.EXTENSION.length()) : name;
+        ProjectStore.load(file, new ProjectStore.LoadCallback() {
+            @Override
+            public void onProjectLoaded(ProjectFile project) {
+                if (isDestroyed()) return;
+                pendingProject = project;
+                imageUriString = project.getBaseImageUri();
+                loadImage(Uri.parse(imageUriString));
+            }
+
+            @Override
+            public void onProjectLoadFailed(Exception error) {
+                if (isDestroyed()) return;
+                Toast.makeText(EditorActivity.this, "Ошибка открытия проекта", Toast.LENGTH_SHORT).show();
+                finish();
+            }
+        });
+    }
+
+    // Прерванная сессия: журнал читается в фоне, затем загружается ее исходное изображение
+    private void restoreSession() {
+        ProjectStore.loadSession(this, new ProjectStore.SessionCallback() {
+            @Override
+            public void onSessionLoaded(CommandJournal.Replay replay, ProjectFile project) {
+                if (isDestroyed()) return;
+                pendingReplay = replay;
+                pendingProject = project;
+                imageUriString = replay.getBaseImageUri();
+                loadImage(Uri.parse(imageUriString));
+            }
+
+            @Override
+            public void onSessionLoadFailed(Exception error) {
+                if (isDestroyed()) return;
+                Toast.makeText(EditorActivity.this, "Не удалось восстановить сессию", Toast.LENGTH_SHORT).show();
+                finish();
+            }
+        });
+    }
+
+    // Журнал начинается, когда изображение загружено и правки становятся возможны.
+    // Если сессия началась с проекта, его снимок сохраняется в заголовке журнала
+    private void startJournal(boolean fromProject) {
+        File file = ProjectStore.getJournalFile(this);
+        if (pendingReplay != null) {
+            editorView.replaySession(pendingReplay);
+            journal = CommandJournal.resume(file, pendingReplay);
+            pendingReplay = null;
+        } else {
+            try {
+                ProjectFile snapshot = fromProject ? editorView.createProjectFile(imageUriString) : null;
+                journal = CommandJournal.create(file, imageUriString, snapshot != null ? snapshot.encode() : null);
+            } catch (IOException e) {
+                Log.e(TAG, "Не удалось начать журнал сессии", e);
+                return;
+            }
+        }
+        editorView.setCommandJournal(journal);
+    }
+
     private void setupToolbarView() {
         toolbarView.setOnToolSelectedListener(tool -> {
             Log.d(TAG, "Выбран инструмент: " + tool);
@@ -485,42 +628,123 @@ public class EditorActivity extends AppCompatActivity {
     }
 
     private void saveImage() {
-        Bitmap finalBitmap = editorView.getFinalBitmap();
-        if (finalBitmap != null) {
-            // Сначала спрашиваем пользователя, желает ли он сохранить изображение
-            new androidx.appcompat.app.AlertDialog.Builder(this)
-                    .setTitle("Сохранение изображения")
-                    .setMessage("Сохранить отредактированное изображение в галерею?")
-                    .setPositiveButton("Сохранить", (dialog, which) -> {
-                        saveImageToGallery(finalBitmap);
-                    })
-                    .setNegativeButton("Отмена", null)
-                    .show();
-        } else {
+        if (editorView.getWorkingBitmap() == null) {
             Log.w(TAG, "Не удалось получить финальное изображение");
             Toast.makeText(this, "Ошибка при сохранении", Toast.LENGTH_SHORT).show();
+            return;
         }
+
+        // Сначала спрашиваем пользователя, желает ли он сохранить изображение
+        new androidx.appcompat.app.AlertDialog.Builder(this)
+                .setTitle("Сохранение изображения")
+                .setMessage("Сохранить отредактированное изображение в галерею?")
+                .setPositiveButton("Сохранить", (dialog, which) -> {
+                    saveImageToGallery();
+                })
+                .setNeutralButton("Сохранить проект", (dialog, which) -> {
+                    saveProject();
+                })
+                .setNegativeButton("Отмена", null)
+                .show();
     }
 
-    private void saveImageToGallery(Bitmap bitmap) {
-        ContentValues values = new ContentValues();
-        values.put(MediaStore.Images.Media.DISPLAY_NAME, "edited_image_" + System.currentTimeMillis() + ".jpg");
-        values.put(MediaStore.Images.Media.MIME_TYPE, "image/jpeg");
+    // Проект хранит ссылку на исходное изображение и правки, поэтому сохраняется быстро и без потерь
+    private void saveProject() {
+        ProjectFile project = editorView.createProjectFile(imageUriString);
+        if (project == null) return;
+        if (projectName == null) {
+            projectName = "project_" + System.currentTimeMillis();
+        }
 
-        Uri imageUri = getContentResolver().insert(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, values);
-        if (imageUri != null) {
-            try {
-                OutputStream outputStream = getContentResolver().openOutputStream(imageUri);
-                if (outputStream != null) {
-                    bitmap.compress(Bitmap.CompressFormat.JPEG, 95, outputStream);
-                    outputStream.close();
-                    Toast.makeText(this, "Изображение успешно сохранено", Toast.LENGTH_SHORT).show();
-                    Log.d(TAG, "Изображение сохранено: " + imageUri);
-                }
-            } catch (Exception e) {
-                Log.e(TAG, "Ошибка сохранения изображения", e);
-                Toast.makeText(this, "Ошибка сохранения изображения", Toast.LENGTH_SHORT).show();
+        ProjectStore.save(this, project, projectName, new ProjectStore.SaveCallback() {
+            @Override
+            public void onProjectSaved(File file) {
+                Log.d(TAG, "Проект сохранен: " + file);
+                if (isDestroyed()) return;
+                Toast.makeText(EditorActivity.this, "Проект сохранен", Toast.LENGTH_SHORT).show();
+            }
+
+            @Override
+            public void onProjectSaveFailed(Exception error) {
+                if (isDestroyed()) return;
+                Toast.makeText(EditorActivity.this, "Ошибка сохранения проекта", Toast.LENGTH_SHORT).show();
             }
+        });
+    }
+
+    // Наложение рисунков и кодирование идут в фоне, пока показан диалог с прогрессом
+    private void saveImageToGallery() {
+        ProgressBar progressBar = new ProgressBar(this, null, android.R.attr.progressBarStyleHorizontal);
+        progressBar.setMax(100);
+        progressBar.setPadding(40, 20, 40, 20);
+
+        androidx.appcompat.app.AlertDialog progressDialog = new androidx.appcompat.app.AlertDialog.Builder(this)
+                .setTitle("Сохранение изображения")
+                .setView(progressBar)
+                .setCancelable(false)
+                .show();
+
+        // Экспорт читает живые битмапу и рисунки в фоне, поэтому правки заблокированы до его конца.
+        // Сессия переживает пересоздание активности и разблокируется, даже если эта активность закрыта
+        EditorSession session = viewModel.getSession();
+        session.lockEditing();
+        ImageExporter.export(this, editorView.getWorkingBitmap(), editorView.getDrawingObjects(),
+                new ImageExporter.Callback() {
+                    @Override
+                    public void onExportProgress(int percent) {
+                        progressBar.setProgress(percent);
+                    }
+
+                    @Override
+                    public void onExportFinished(Uri imageUri) {
+                        Log.d(TAG, "Изображение сохранено: " + imageUri);
+                        session.unlockEditing();
+                        if (isDestroyed()) return;
+                        progressDialog.dismiss();
+                        Toast.makeText(EditorActivity.this, "Изображение успешно сохранено", Toast.LENGTH_SHORT).show();
+                    }
+
+                    @Override
+                    public void onExportFailed(Exception error) {
+                        Log.e(TAG, "Ошибка сохранения изображения", error);
+                        session.unlockEditing();
+                        if (isDestroyed()) return;
+                        progressDialog.dismiss();
+                        Toast.makeText(EditorActivity.this, "Ошибка сохранения изображения", Toast.LENGTH_SHORT).show();
+                    }
+                });
+    }
+
+    @Override
+    protected void onDestroy() {
+        // Незавершенная загрузка больше никому не нужна
+        if (imageLoadHandle != null) {
+            imageLoadHandle.cancel();
+            imageLoadHandle = null;
+        }
+        // При пересоздании журнал и имя проекта переходят к новой активности вместе с сессией
+        if (isChangingConfigurations()) {
+            viewModel.setImageUriString(imageUriString);
+            viewModel.setProjectName(projectName);
+            viewModel.setJournal(journal);
+            super.onDestroy();
+            return;
+        }
+        // Выход из редактора завершает сессию; журнал остается только после аварийного завершения
+        if (journal != null) {
+            editorView.setCommandJournal(null);
+            journal.close(isFinishing());
+            journal = null;
+        }
+        super.onDestroy();
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        // Свободные битмапы пула отдаем системе при нехватке памяти
+        if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            BitmapPool.getInstance().clear();
         }
     }
 
@@ -0,0 +1,57 @@
+package com.example.imageeditor;
+
+import androidx.lifecycle.ViewModel;
+
+import com.example.imageeditor.history.CommandJournal;
+import com.example.imageeditor.views.EditorSession;
+
+// Сессия редактора, которую хранит система между пересозданиями EditorActivity.
+// После поворота экрана новая активность берет отсюда изображение, рисунки, историю и журнал
+public class EditorViewModel extends ViewModel {
+    private EditorSession session;
+    private CommandJournal journal;
+    private String imageUriString;
+    private String projectName;
+
+    public EditorSession getSession() {
+        return session;
+    }
+
+    public void setSession(EditorSession session) {
+        this.session = session;
+    }
+
+    public CommandJournal getJournal() {
+        return journal;
+    }
+
+    public void setJournal(CommandJournal journal) {
+        this.journal = journal;
+    }
+
+    public String getImageUriString() {
+        return imageUriString;
+    }
+
+    public void setImageUriString(String imageUriString) {
+        this.imageUriString = imageUriString;
+    }
+
+    public String getProjectName() {
+        return projectName;
+    }
+
+    public void setProjectName(String projectName) {
+        this.projectName = projectName;
+    }
+
+    // Активность закрыта окончательно: журнал к этому моменту закрыт в onDestroy
+    @Override
+    protected void onCleared() {
+        if (session != null) {
+            session.release();
+            session = null;
+        }
+        journal = null;
+    }
+}
@@ -18,7 +18,9 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.content.ContextCompat;
 import androidx.core.content.FileProvider;
 
+import com.example.imageeditor.history.CommandJournal;
 import com.example.imageeditor.utils.FileUtils;
+import com.example.imageeditor.utils.ProjectStore;
 
 import java.io.File;
 import java.io.IOException;
@@ -44,6 +46,7 @@ public class MainActivity extends AppCompatActivity {
         // Инициализация кнопок
         Button btnTakePhoto = findViewById(R.id.btnTakePhoto);
         Button btnChoosePhoto = findViewById(R.id.btnChoosePhoto);
+        Button btnOpenProject = findViewById(R.id.btnOpenProject);
 
         // Инициализация лаунчеров
         initializeActivityResultLaunchers();
@@ -66,6 +69,43 @@ public class MainActivity extends AppCompatActivity {
                 openGallery();
             }
         });
+
+        btnOpenProject.setOnClickListener(v -> {
+            Log.d(TAG, "Кнопка 'Открыть последний проект' нажата");
+            File project = ProjectStore.findLatestProject(this);
+            if (project != null) {
+                Intent editorIntent = new Intent(this, EditorActivity.class);
+                editorIntent.putExtra("projectPath", project.getAbsolutePath());
+                startActivity(editorIntent);
+            } else {
+                Toast.makeText(this, "Сохраненных проектов нет", Toast.LENGTH_SHORT).show();
+            }
+        });
+
+        if (savedInstanceState == null) {
+            offerSessionRestore();
+        }
+    }
+
+    // Журнал остается, только если редактор был закрыт аварийно
+    private void offerSessionRestore() {
+        File journal = ProjectStore.getJournalFile(this);
+        if (!CommandJournal.hasSession(journal)) return;
+
+        new androidx.appcompat.app.AlertDialog.Builder(this)
+                .setTitle("Восстановление сессии")
+                .setMessage("Редактор был закрыт аварийно. Восстановить несохраненные правки?")
+                .setPositiveButton("Восстановить", (dialog, which) -> {
+                    Intent editorIntent = new Intent(this, EditorActivity.class);
+                    editorIntent.putExtra("restoreSession", true);
+                    startActivity(editorIntent);
+                })
+                .setNegativeButton("Удалить", (dialog, which) -> {
+                    if (!journal.delete()) {
+                        Log.w(TAG, "Не удалось удалить журнал сессии");
+                    }
+                })
+                .show();
     }
 
     private void initializeActivityResultLaunchers() {
@@ -3,4 +3,9 @@ package com.example.imageeditor.history;
 public interface Command {
     void execute();
     void undo();
-}
\ No newline at end of file
+
+    // Примерный объем памяти, который удерживает только история (не сцена и не рабочая битмапа)
+    default long estimateBytes() {
+        return 0;
+    }
+}
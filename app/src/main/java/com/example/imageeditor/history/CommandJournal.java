@@ -0,0 +1,433 @@
+package com.example.imageeditor.history;
+
+import android.graphics.Rect;
+import android.util.Log;
+
+import com.example.imageeditor.models.DrawingObject;
+import com.example.imageeditor.models.DrawingScene;
+import com.example.imageeditor.models.ProjectFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+// Журнал автосохранения: команды истории, отмены и повторы дописываются в файл, чтобы после
+// аварийного завершения процесса восстановить сессию повторным выполнением команд.
+// Записи кодируются в вызывающем потоке (объекты сцены меняются на месте), а пишет их фоновый
+// поток пачками с fsync не чаще FSYNC_INTERVAL_MS; вызывающий поток никогда не ждет диска.
+// Формат: заголовок (исходное изображение и снимок проекта на момент начала), затем записи
+// "длина, данные, CRC32". Оборванная при сбое последняя запись при чтении отбрасывается
+public class CommandJournal {
+    private static final String TAG = "CommandJournal";
+
+    private static final int MAGIC = 0x49454A4E; // "IEJN"
+    // Версия 2: объекты записываются в формате записей файла проекта
+    private static final int VERSION = 2;
+    // Между fsync теряется не больше этого интервала правок
+    static final long FSYNC_INTERVAL_MS = 500;
+    private static final int BATCH_SIZE = 256 * 1024;
+    private static final int RECORD_OVERHEAD = 8;
+
+    static final byte TYPE_DRAW_ADD = 1;
+    static final byte TYPE_DRAW_REMOVE = 2;
+    static final byte TYPE_ROTATE = 3;
+    static final byte TYPE_FLIP = 4;
+    static final byte TYPE_CROP = 5;
+    static final byte TYPE_UNDO = 10;
+    static final byte TYPE_REDO = 11;
+    static final byte TYPE_CLEAR = 12;
+
+    // Метка закрытия в очереди записи
+    private static final byte[] CLOSE = new byte[0];
+
+    private final File file;
+    private final LinkedBlockingQueue<byte[]> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(256);
+    private final DataOutputStream recordOut = new DataOutputStream(recordBytes);
+    private volatile boolean failed;
+    private boolean closed;
+    private boolean deleteOnClose;
+
+    private final AtomicLong writtenRecords = new AtomicLong();
+    private final AtomicLong syncCount = new AtomicLong();
+
+    private CommandJournal(File file, byte[] header, long resumeLength) {
+        this.file = file;
+        writer = new Thread(() -> runWriter(header, resumeLength), "CommandJournal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // Новый журнал сессии; project - закодированный снимок проекта на момент начала или null.
+    // Невосстановленная прерванная сессия не перезаписывается: ее продолжают через resume или удаляют
+    public static CommandJournal create(File file, String baseImageUri, ByteBuffer project) throws IOException {
+        if (hasSession(file)) {
+            throw new IOException("Журнал прерванной сессии еще не восстановлен: " + file);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(baseImageUri != null ? baseImageUri : "");
+            if (project != null) {
+                ByteBuffer data = project.duplicate();
+                out.writeInt(data.remaining());
+                byte[] projectBytes = new byte[data.remaining()];
+                data.get(projectBytes);
+                out.write(projectBytes);
+            } else {
+                out.writeInt(0);
+            }
+        } catch (IOException e) {
+            // ByteArrayOutputStream не бросает IOException
+            throw new IllegalStateException(e);
+        }
+        return new CommandJournal(file, bytes.toByteArray(), -1);
+    }
+
+    // Продолжение журнала после восстановления: оборванный хвост отрезается, записи дописываются
+    public static CommandJournal resume(File file, Replay replay) {
+        return new CommandJournal(file, null, replay.validLength);
+    }
+
+    public void recordExecute(Command command) {
+        if (!canRecord()) return;
+        if (!(command instanceof JournaledCommand)) {
+            // Без этой команды повтор журнала разойдется с сессией
+            Log.w(TAG, "Команда не поддерживает журнал: " + command.getClass().getName());
+            failed = true;
+            return;
+        }
+        try {
+            ((JournaledCommand) command).writeJournal(recordOut);
+        } catch (IOException e) {
+            Log.e(TAG, "Ошибка кодирования команды для журнала", e);
+            failed = true;
+            recordBytes.reset();
+            return;
+        }
+        enqueueRecord();
+    }
+
+    public void recordUndo() {
+        recordMarker(TYPE_UNDO);
+    }
+
+    public void recordRedo() {
+        recordMarker(TYPE_REDO);
+    }
+
+    public void recordClear() {
+        recordMarker(TYPE_CLEAR);
+    }
+
+    private void recordMarker(byte type) {
+        if (!canRecord()) return;
+        recordBytes.write(type);
+        enqueueRecord();
+    }
+
+    private boolean canRecord() {
+        return !closed && !failed;
+    }
+
+    private void enqueueRecord() {
+        queue.add(recordBytes.toByteArray());
+        recordBytes.reset();
+    }
+
+    // Дописывает оставшиеся записи и закрывает файл в фоне; delete - сессия завершена и журнал не нужен
+    public void close(boolean delete) {
+        if (closed) return;
+        closed = true;
+        deleteOnClose = delete;
+        if (writer.isAlive()) {
+            queue.add(CLOSE);
+        } else if (delete && !file.delete()) {
+            Log.w(TAG, "Не удалось удалить журнал " + file);
+        }
+    }
+
+    // Ожидание фонового потока после close; нужно только тестам и при завершении процесса
+    void awaitClosed(long timeoutMs) throws InterruptedException {
+        writer.join(timeoutMs);
+    }
+
+    public boolean isFailed() {
+        return failed;
+    }
+
+    public long getWrittenRecords() {
+        return writtenRecords.get();
+    }
+
+    public long getSyncCount() {
+        return syncCount.get();
+    }
+
+    private void runWriter(byte[] header, long resumeLength) {
+        CRC32 crc = new CRC32();
+        ByteBuffer batch = ByteBuffer.allocate(BATCH_SIZE);
+        try (RandomAccessFile store = new RandomAccessFile(file, "rw")) {
+            FileChannel channel = store.getChannel();
+            if (header != null) {
+                channel.truncate(0);
+                writeFully(channel, ByteBuffer.wrap(header));
+                channel.force(false);
+            } else {
+                channel.truncate(resumeLength);
+                channel.position(resumeLength);
+            }
+
+            long lastSync = System.nanoTime();
+            boolean dirty = false;
+            boolean closing = false;
+            while (!closing) {
+                byte[] record;
+                if (dirty) {
+                    long waitMs = FSYNC_INTERVAL_MS - (System.nanoTime() - lastSync) / 1_000_000;
+                    record = waitMs > 0 ? queue.poll(waitMs, TimeUnit.MILLISECONDS) : queue.poll();
+                } else {
+                    record = queue.take();
+                }
+
+                // Пачка: все, что накопилось в очереди к этому моменту
+                batch.clear();
+                int count = 0;
+                while (record != null) {
+                    if (record == CLOSE) {
+                        closing = true;
+                        break;
+                    }
+                    if (batch.remaining() < record.length + RECORD_OVERHEAD) {
+                        if (batch.position() > 0) {
+                            batch.flip();
+                            writeFully(channel, batch);
+                            batch.clear();
+                        }
+                        if (batch.capacity() < record.length + RECORD_OVERHEAD) {
+                            batch = ByteBuffer.allocate(record.length + RECORD_OVERHEAD);
+                        }
+                    }
+                    crc.reset();
+                    crc.update(record, 0, record.length);
+                    batch.putInt(record.length);
+                    batch.put(record);
+                    batch.putInt((int) crc.getValue());
+                    count++;
+                    record = queue.poll();
+                }
+                if (batch.position() > 0) {
+                    batch.flip();
+                    writeFully(channel, batch);
+                    if (batch.capacity() > BATCH_SIZE) {
+                        batch = ByteBuffer.allocate(BATCH_SIZE);
+                    }
+                }
+                writtenRecords.addAndGet(count);
+                dirty |= count > 0;
+
+                if (dirty && (closing || (System.nanoTime() - lastSync) / 1_000_000 >= FSYNC_INTERVAL_MS)) {
+                    channel.force(false);
+                    syncCount.incrementAndGet();
+                    lastSync = System.nanoTime();
+                    dirty = false;
+                }
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Ошибка записи журнала", e);
+            failed = true;
+            queue.clear();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (deleteOnClose && !file.delete()) {
+            Log.w(TAG, "Не удалось удалить журнал " + file);
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer data) throws IOException {
+        while (data.hasRemaining()) {
+            channel.write(data);
+        }
+    }
+
+    // Журнал содержит хотя бы заголовок прерванной сессии
+    public static boolean hasSession(File file) {
+        return file.isFile() && file.length() > 12;
+    }
+
+    // Чтение журнала; выполняется в фоне, команды потом применяются в главном потоке через Replay.applyTo
+    public static Replay read(File file) throws IOException {
+        byte[] data;
+        try (FileInputStream stream = new FileInputStream(file)) {
+            FileChannel channel = stream.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new IOException("Неожиданный конец журнала");
+                }
+            }
+            data = buffer.array();
+        }
+
+        DataInputStream header = new DataInputStream(new ByteArrayInputStream(data));
+        if (data.length < 8 || header.readInt() != MAGIC) {
+            throw new IOException("Это не журнал сессии");
+        }
+        int version = header.readInt();
+        if (version != VERSION) {
+            throw new IOException("Журнал другой версии: " + version);
+        }
+        String baseImageUri = header.readUTF();
+        int projectLength = header.readInt();
+        ByteBuffer project = null;
+        int position = data.length - header.available();
+        if (projectLength > 0) {
+            project = ByteBuffer.wrap(data, position, projectLength).slice();
+            position += projectLength;
+        }
+        if (position > data.length) {
+            throw new IOException("Заголовок журнала оборван");
+        }
+
+        List<Entry> entries = new ArrayList<>();
+        CRC32 crc = new CRC32();
+        ByteBuffer records = ByteBuffer.wrap(data);
+        records.position(position);
+        long validLength = position;
+        while (records.remaining() >= RECORD_OVERHEAD) {
+            int length = records.getInt();
+            if (length <= 0 || length > records.remaining() - 4) break;
+            int start = records.position();
+            records.position(start + length);
+            crc.reset();
+            crc.update(data, start, length);
+            if (records.getInt() != (int) crc.getValue()) break;
+            try {
+                entries.add(readEntry(new DataInputStream(new ByteArrayInputStream(data, start, length))));
+            } catch (IOException e) {
+                Log.w(TAG, "Поврежденная запись журнала", e);
+                break;
+            }
+            validLength = records.position();
+        }
+        return new Replay(baseImageUri, project, entries, validLength);
+    }
+
+    private static Entry readEntry(DataInputStream in) throws IOException {
+        Entry entry = new Entry(in.readByte());
+        switch (entry.type) {
+            case TYPE_DRAW_ADD:
+                entry.object = ProjectFile.readObject(in);
+                break;
+            case TYPE_DRAW_REMOVE:
+            case TYPE_ROTATE:
+                entry.values = new int[]{in.readInt()};
+                break;
+            case TYPE_CROP:
+                entry.values = new int[]{in.readInt(), in.readInt(), in.readInt(), in.readInt()};
+                break;
+            case TYPE_FLIP:
+            case TYPE_UNDO:
+            case TYPE_REDO:
+            case TYPE_CLEAR:
+                break;
+            default:
+                throw new IOException("Неизвестная запись журнала: " + entry.type);
+        }
+        return entry;
+    }
+
+    // Прочитанная сессия: исходное изображение, начальный снимок проекта и команды для повтора
+    public static class Replay {
+        private final String baseImageUri;
+        private final ByteBuffer project;
+        private final List<Entry> entries;
+        private final long validLength;
+
+        Replay(String baseImageUri, ByteBuffer project, List<Entry> entries, long validLength) {
+            this.baseImageUri = baseImageUri;
+            this.project = project;
+            this.entries = entries;
+            this.validLength = validLength;
+        }
+
+        public String getBaseImageUri() {
+            return baseImageUri;
+        }
+
+        // Закодированный проект (см. ProjectFile.decode) или null
+        public ByteBuffer getProject() {
+            return project != null ? project.duplicate() : null;
+        }
+
+        public int getEntryCount() {
+            return entries.size();
+        }
+
+        // Повторяет записанные действия; журнал в history в это время не должен быть подключен
+        public void applyTo(ImageHost host, DrawingScene scene, HistoryManager history) {
+            for (Entry entry : entries) {
+                switch (entry.type) {
+                    case TYPE_DRAW_ADD:
+                        history.executeCommand(new DrawCommand(scene, entry.object));
+                        break;
+                    case TYPE_DRAW_REMOVE: {
+                        int index = entry.values[0];
+                        if (index >= scene.size()) {
+                            Log.w(TAG, "Удаление несуществующего объекта в журнале: " + index);
+                            return;
+                        }
+                        history.executeCommand(new DrawCommand(scene, scene.get(index), index));
+                        break;
+                    }
+                    case TYPE_ROTATE:
+                        history.executeCommand(new RotateCommand(host, scene, entry.values[0]));
+                        break;
+                    case TYPE_FLIP:
+                        history.executeCommand(new FlipCommand(host, scene));
+                        break;
+                    case TYPE_CROP:
+                        history.executeCommand(new CropCommand(host, scene,
+                                new Rect(entry.values[0], entry.values[1], entry.values[2], entry.values[3])));
+                        break;
+                    case TYPE_UNDO:
+                        history.undo();
+                        break;
+                    case TYPE_REDO:
+                        history.redo();
+                        break;
+                    case TYPE_CLEAR:
+                        history.clear();
+                        break;
+                }
+            }
+        }
+    }
+
+    private static class Entry {
+        final byte type;
+        DrawingObject object;
+        int[] values;
+
+        Entry(byte type) {
+            this.type = type;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.imageeditor.history;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Rect;
+import android.util.Log;
+
+import com.example.imageeditor.models.DrawingScene;
+import com.example.imageeditor.utils.BitmapPool;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+
+// Обрезка изображения. Рисунки сдвигаются в координаты обрезанной области, а для отмены
+// сохраняются только срезанные плитки в сжатом виде; полная битмапа не удерживается
+public class CropCommand implements SpillableCommand, JournaledCommand {
+    private static final String TAG = "CropCommand";
+
+    private final ImageHost host;
+    private final DrawingScene scene;
+    private final Rect area;
+    // Срезаемые плитки исходного изображения; после отмены остаются для повтора без пересжатия
+    private RasterSnapshot snapshot;
+
+    public CropCommand(ImageHost host, DrawingScene scene, Rect area) {
+        this.host = host;
+        this.scene = scene;
+        this.area = new Rect(area);
+    }
+
+    @Override
+    public void execute() {
+        Bitmap image = host.getImage();
+        host.beforeImageChange();
+        if (snapshot == null) {
+            snapshot = RasterSnapshot.captureOutside(image, area);
+        }
+
+        Bitmap cropped = BitmapPool.getInstance().get(area.width(), area.height(), Bitmap.Config.ARGB_8888);
+        new Canvas(cropped).drawBitmap(image, -area.left, -area.top, null);
+
+        translateObjects(-area.left, -area.top);
+        host.setImage(cropped);
+        BitmapPool.getInstance().put(image);
+    }
+
+    @Override
+    public void undo() {
+        Bitmap cropped = host.getImage();
+
+        // Оставшаяся часть возвращается на место, срезанные плитки распаковываются из снимка
+        Bitmap image = BitmapPool.getInstance().get(snapshot.getWidth(), snapshot.getHeight(),
+                Bitmap.Config.ARGB_8888);
+        new Canvas(image).drawBitmap(cropped, area.left, area.top, null);
+        try {
+            snapshot.restore(image);
+        } catch (DataFormatException e) {
+            Log.e(TAG, "Снимок обрезанной области поврежден", e);
+        }
+
+        translateObjects(area.left, area.top);
+        host.setImage(image);
+        BitmapPool.getInstance().put(cropped);
+    }
+
+    private void translateObjects(float dx, float dy) {
+        Matrix matrix = new Matrix();
+        matrix.setTranslate(dx, dy);
+        scene.transformAll(matrix);
+    }
+
+    @Override
+    public long estimateBytes() {
+        return snapshot != null ? snapshot.getByteCount() : 0;
+    }
+
+    @Override
+    public boolean canSpill() {
+        return snapshot != null;
+    }
+
+    @Override
+    public void spill(DataOutputStream out) throws IOException {
+        snapshot.writeTo(out);
+    }
+
+    @Override
+    public void releaseSpilled() {
+        snapshot = null;
+    }
+
+    @Override
+    public void restore(DataInputStream in) throws IOException {
+        snapshot = RasterSnapshot.readFrom(in);
+    }
+
+    // Срезанные плитки не пишутся: при повторе они снимаются заново с восстановленного изображения
+    @Override
+    public void writeJournal(DataOutputStream out) throws IOException {
+        out.writeByte(CommandJournal.TYPE_CROP);
+        out.writeInt(area.left);
+        out.writeInt(area.top);
+        out.writeInt(area.right);
+        out.writeInt(area.bottom);
+    }
+}
@@ -1,48 +1,97 @@
 package com.example.imageeditor.history;
 
 import com.example.imageeditor.models.DrawingObject;
+import com.example.imageeditor.models.DrawingScene;
+import com.example.imageeditor.models.ProjectFile;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 
-public class DrawCommand implements Command {
-    private List<DrawingObject> drawingObjects;
+public class DrawCommand implements SpillableCommand, JournaledCommand {
+    private final DrawingScene scene;
     private DrawingObject drawingObject;
-    private boolean isAdd;
+    private final boolean isAdd;
+    // Позиция объекта в сцене; в линейной истории она совпадает при каждом повторе и отмене
+    private int index;
+    // Объект в сцене удерживается сценой, а не историей
+    private boolean inScene;
 
-    // Команда для добавления объекта рисования
-    public DrawCommand(List<DrawingObject> drawingObjects, DrawingObject drawingObject) {
-        this.drawingObjects = drawingObjects;
+    // Команда для добавления объекта рисования в конец сцены
+    public DrawCommand(DrawingScene scene, DrawingObject drawingObject) {
+        this.scene = scene;
         this.drawingObject = drawingObject;
         this.isAdd = true;
+        this.index = -1;
     }
 
-    // Команда для удаления объекта рисования
-    public DrawCommand(List<DrawingObject> drawingObjects, DrawingObject drawingObject, boolean isAdd) {
-        this.drawingObjects = drawingObjects;
+    // Команда для удаления объекта рисования, находящегося в сцене на позиции index
+    public DrawCommand(DrawingScene scene, DrawingObject drawingObject, int index) {
+        this.scene = scene;
         this.drawingObject = drawingObject;
-        this.isAdd = isAdd;
+        this.isAdd = false;
+        this.index = index;
+        this.inScene = true;
     }
 
     @Override
     public void execute() {
         if (isAdd) {
-            if (!drawingObjects.contains(drawingObject)) {
-                drawingObjects.add(drawingObject);
+            if (index < 0) {
+                index = scene.size();
             }
+            scene.insert(index, drawingObject);
         } else {
-            drawingObjects.remove(drawingObject);
+            scene.removeAt(index);
         }
+        inScene = isAdd;
     }
 
     @Override
     public void undo() {
         if (isAdd) {
-            drawingObjects.remove(drawingObject);
+            scene.removeAt(index);
         } else {
-            if (!drawingObjects.contains(drawingObject)) {
-                drawingObjects.add(drawingObject);
-            }
+            scene.insert(index, drawingObject);
+        }
+        inScene = !isAdd;
+    }
+
+    @Override
+    public long estimateBytes() {
+        return inScene || drawingObject == null ? 0 : drawingObject.estimateBytes();
+    }
+
+    // Выгрузить можно только объект вне сцены: объект в сцене все равно остается в памяти
+    @Override
+    public boolean canSpill() {
+        return !inScene && drawingObject != null;
+    }
+
+    @Override
+    public void spill(DataOutputStream out) throws IOException {
+        ProjectFile.writeObject(out, drawingObject);
+    }
+
+    @Override
+    public void releaseSpilled() {
+        drawingObject = null;
+    }
+
+    @Override
+    public void restore(DataInputStream in) throws IOException {
+        drawingObject = ProjectFile.readObject(in);
+    }
+
+    // Записывается сразу после выполнения, пока объект еще в памяти
+    @Override
+    public void writeJournal(DataOutputStream out) throws IOException {
+        if (isAdd) {
+            out.writeByte(CommandJournal.TYPE_DRAW_ADD);
+            ProjectFile.writeObject(out, drawingObject);
+        } else {
+            out.writeByte(CommandJournal.TYPE_DRAW_REMOVE);
+            out.writeInt(index);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,50 @@
+package com.example.imageeditor.history;
+
+import android.graphics.Bitmap;
+import android.graphics.Matrix;
+
+import com.example.imageeditor.models.DrawingScene;
+import com.example.imageeditor.utils.OrthogonalTransform;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+
+// Отражение изображения по горизонтали вместе с рисунками. Команда обратна сама себе
+public class FlipCommand implements JournaledCommand {
+    private final ImageHost host;
+    private final DrawingScene scene;
+
+    public FlipCommand(ImageHost host, DrawingScene scene) {
+        this.host = host;
+        this.scene = scene;
+    }
+
+    @Override
+    public void execute() {
+        flip();
+    }
+
+    @Override
+    public void undo() {
+        flip();
+    }
+
+    @Override
+    public void writeJournal(DataOutputStream out) throws IOException {
+        out.writeByte(CommandJournal.TYPE_FLIP);
+    }
+
+    private void flip() {
+        Bitmap image = host.getImage();
+        host.beforeImageChange();
+
+        Matrix matrix = new Matrix();
+        matrix.setScale(-1, 1);
+        matrix.postTranslate(image.getWidth(), 0);
+
+        OrthogonalTransform.flipHorizontal(image);
+        scene.transformAll(matrix);
+        host.setImage(image);
+    }
+}
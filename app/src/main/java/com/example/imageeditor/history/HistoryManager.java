@@ -1,20 +1,81 @@
 package com.example.imageeditor.history;
 
-import java.util.Stack;
+import android.util.Log;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// История команд с ограничением по памяти. При превышении бюджета данные самых старых команд
+// выгружаются в файл в кэше, а если это невозможно, самые старые команды отбрасываются
 public class HistoryManager {
-    private Stack<Command> undoStack;
-    private Stack<Command> redoStack;
+    private static final String TAG = "HistoryManager";
+
+    // Собственный размер записи истории и объекта команды
+    private static final long COMMAND_OVERHEAD_BYTES = 64;
+    // Файл выгрузки может быть больше бюджета памяти в несколько раз
+    private static final long SPILL_FILE_BUDGET_FACTOR = 4;
+    private static final int SPILL_BUFFER_SIZE = 64 * 1024;
+
+    private final ArrayDeque<Entry> undoStack = new ArrayDeque<>();
+    private final ArrayDeque<Entry> redoStack = new ArrayDeque<>();
+
+    private final File spillFile;
+    private long byteBudget;
+    private long retainedBytes;
+
+    // Журнал автосохранения или null
+    private CommandJournal journal;
+
+    private RandomAccessFile spillStore;
+    private long spillFileLength;
+    // Объем еще нужных выгруженных данных; остальное место в файле занято устаревшими записями
+    private long spilledBytes;
+    private int spilledCount;
 
     public HistoryManager() {
-        undoStack = new Stack<>();
-        redoStack = new Stack<>();
+        this(null, Long.MAX_VALUE);
+    }
+
+    // spillFile может быть null - тогда при превышении бюджета команды только отбрасываются
+    public HistoryManager(File spillFile, long byteBudget) {
+        this.spillFile = spillFile;
+        this.byteBudget = byteBudget;
+    }
+
+    public void setByteBudget(long byteBudget) {
+        this.byteBudget = byteBudget;
+        trimToBudget();
+    }
+
+    // Подключает журнал, в который дописываются все последующие команды, отмены и повторы
+    public void setJournal(CommandJournal journal) {
+        this.journal = journal;
+    }
+
+    public CommandJournal getJournal() {
+        return journal;
     }
 
     public void executeCommand(Command command) {
         command.execute();
-        undoStack.push(command);
-        redoStack.clear(); // После новой команды очищаем стек redo
+        clearStack(redoStack); // После новой команды очищаем стек redo
+        push(undoStack, command);
+        if (journal != null) {
+            journal.recordExecute(command);
+        }
+        trimToBudget();
     }
 
     public boolean canUndo() {
@@ -26,23 +87,276 @@ public class HistoryManager {
     }
 
     public void undo() {
-        if (canUndo()) {
-            Command command = undoStack.pop();
-            command.undo();
-            redoStack.push(command);
+        if (!canUndo()) return;
+
+        Entry entry = undoStack.pollLast();
+        boolean loaded = load(entry);
+        forget(entry);
+        if (!loaded) {
+            // Без этой команды более старые уже не отменить
+            clearStack(undoStack);
+            return;
+        }
+        entry.command.undo();
+        push(redoStack, entry.command);
+        if (journal != null) {
+            journal.recordUndo();
         }
+        trimToBudget();
     }
 
     public void redo() {
-        if (canRedo()) {
-            Command command = redoStack.pop();
-            command.execute();
-            undoStack.push(command);
+        if (!canRedo()) return;
+
+        Entry entry = redoStack.pollLast();
+        boolean loaded = load(entry);
+        forget(entry);
+        if (!loaded) {
+            clearStack(redoStack);
+            return;
         }
+        entry.command.execute();
+        push(undoStack, entry.command);
+        if (journal != null) {
+            journal.recordRedo();
+        }
+        trimToBudget();
     }
 
     public void clear() {
-        undoStack.clear();
-        redoStack.clear();
+        clearStack(undoStack);
+        clearStack(redoStack);
+        if (journal != null) {
+            journal.recordClear();
+        }
+    }
+
+    public long getRetainedBytes() {
+        return retainedBytes;
+    }
+
+    public int getUndoCount() {
+        return undoStack.size();
+    }
+
+    public int getRedoCount() {
+        return redoStack.size();
+    }
+
+    public int getSpilledCount() {
+        return spilledCount;
+    }
+
+    private void push(ArrayDeque<Entry> stack, Command command) {
+        Entry entry = new Entry(command);
+        entry.bytes = COMMAND_OVERHEAD_BYTES + command.estimateBytes();
+        retainedBytes += entry.bytes;
+        stack.addLast(entry);
+    }
+
+    private void clearStack(ArrayDeque<Entry> stack) {
+        for (Entry entry : stack) {
+            forget(entry);
+        }
+        stack.clear();
+    }
+
+    // Учет записи, которая покидает историю или переходит в другой стек
+    private void forget(Entry entry) {
+        retainedBytes -= entry.bytes;
+        if (entry.isSpilled()) {
+            entry.spillOffset = -1;
+            spilledBytes -= entry.spillLength;
+            spilledCount--;
+            if (spilledCount == 0) {
+                // Все выгруженные данные больше не нужны, файл можно начать заново
+                truncateSpillFile();
+            }
+        }
+    }
+
+    private void trimToBudget() {
+        while (retainedBytes > byteBudget) {
+            Entry candidate = findSpillCandidate();
+            if (candidate != null && spill(candidate)) {
+                continue;
+            }
+            if (!evictOldest()) {
+                break;
+            }
+        }
+    }
+
+    // Сначала выгружаются самые старые команды undo, затем самые дальние команды redo
+    private Entry findSpillCandidate() {
+        if (spillFile == null) return null;
+        long spillFileBudget = byteBudget * SPILL_FILE_BUDGET_FACTOR;
+        if (spillFileLength >= spillFileBudget && spilledBytes < spillFileLength) {
+            compactSpillFile();
+        }
+        if (spillFileLength >= spillFileBudget) {
+            return null;
+        }
+        Entry candidate = findSpillCandidate(undoStack);
+        return candidate != null ? candidate : findSpillCandidate(redoStack);
+    }
+
+    private Entry findSpillCandidate(ArrayDeque<Entry> stack) {
+        for (Entry entry : stack) {
+            if (!entry.isSpilled() && entry.bytes > COMMAND_OVERHEAD_BYTES
+                    && entry.command instanceof SpillableCommand
+                    && ((SpillableCommand) entry.command).canSpill()) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private boolean spill(Entry entry) {
+        try {
+            FileChannel channel = openSpillStore().getChannel();
+            long offset = spillFileLength;
+            channel.position(offset);
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel), SPILL_BUFFER_SIZE));
+            ((SpillableCommand) entry.command).spill(out);
+            out.flush();
+            spillFileLength = channel.position();
+            ((SpillableCommand) entry.command).releaseSpilled();
+
+            entry.spillOffset = offset;
+            entry.spillLength = spillFileLength - offset;
+            spilledBytes += entry.spillLength;
+            spilledCount++;
+            retainedBytes -= entry.bytes - COMMAND_OVERHEAD_BYTES;
+            entry.bytes = COMMAND_OVERHEAD_BYTES;
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "Не удалось выгрузить команду истории", e);
+            return false;
+        }
+    }
+
+    // Загружает выгруженные данные команды перед undo/redo
+    private boolean load(Entry entry) {
+        if (entry.spillOffset < 0) return true;
+        try {
+            FileChannel channel = openSpillStore().getChannel();
+            channel.position(entry.spillOffset);
+            DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(Channels.newInputStream(channel), SPILL_BUFFER_SIZE));
+            ((SpillableCommand) entry.command).restore(in);
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "Не удалось загрузить команду истории", e);
+            return false;
+        }
+    }
+
+    // Сдвигает нужные выгруженные данные к началу файла, отбрасывая устаревшие записи
+    private void compactSpillFile() {
+        List<Entry> spilled = new ArrayList<>(spilledCount);
+        for (Entry entry : undoStack) {
+            if (entry.isSpilled()) spilled.add(entry);
+        }
+        for (Entry entry : redoStack) {
+            if (entry.isSpilled()) spilled.add(entry);
+        }
+        Collections.sort(spilled, (a, b) -> Long.compare(a.spillOffset, b.spillOffset));
+
+        try {
+            FileChannel channel = openSpillStore().getChannel();
+            ByteBuffer buffer = ByteBuffer.allocate(SPILL_BUFFER_SIZE);
+            long writePosition = 0;
+            for (Entry entry : spilled) {
+                // Записи упорядочены по смещению, поэтому копирование вперед ничего не затирает
+                if (entry.spillOffset != writePosition) {
+                    long copied = 0;
+                    while (copied < entry.spillLength) {
+                        buffer.clear();
+                        buffer.limit((int) Math.min(buffer.capacity(), entry.spillLength - copied));
+                        int read = channel.read(buffer, entry.spillOffset + copied);
+                        if (read <= 0) {
+                            throw new IOException("Неожиданный конец файла истории");
+                        }
+                        buffer.flip();
+                        while (buffer.hasRemaining()) {
+                            channel.write(buffer, writePosition + copied + buffer.position());
+                        }
+                        copied += read;
+                    }
+                    entry.spillOffset = writePosition;
+                }
+                writePosition += entry.spillLength;
+            }
+            channel.truncate(writePosition);
+            spillFileLength = writePosition;
+        } catch (IOException e) {
+            Log.w(TAG, "Не удалось сжать файл истории", e);
+        }
+    }
+
+    // Отбрасывает самую старую команду; последнюю оставшуюся команду не трогаем
+    private boolean evictOldest() {
+        if (undoStack.size() + redoStack.size() <= 1) {
+            return false;
+        }
+        Entry entry = !undoStack.isEmpty() ? undoStack.pollFirst() : redoStack.pollFirst();
+        forget(entry);
+        return true;
+    }
+
+    private RandomAccessFile openSpillStore() throws IOException {
+        if (spillStore == null) {
+            spillStore = new RandomAccessFile(spillFile, "rw");
+            spillStore.setLength(0);
+            spillFileLength = 0;
+        }
+        return spillStore;
+    }
+
+    private void truncateSpillFile() {
+        if (spillStore == null) return;
+        try {
+            spillStore.setLength(0);
+        } catch (IOException e) {
+            Log.w(TAG, "Не удалось очистить файл истории", e);
+        }
+        spillFileLength = 0;
+        spilledBytes = 0;
+    }
+
+    // Закрывает и удаляет файл выгрузки; история при этом очищается
+    public void release() {
+        // Освобождение не правка: в журнал не попадает
+        journal = null;
+        clear();
+        if (spillStore != null) {
+            try {
+                spillStore.close();
+            } catch (IOException e) {
+                Log.w(TAG, "Не удалось закрыть файл истории", e);
+            }
+            spillStore = null;
+        }
+        if (spillFile != null && spillFile.exists() && !spillFile.delete()) {
+            Log.w(TAG, "Не удалось удалить файл истории " + spillFile);
+        }
+    }
+
+    private static class Entry {
+        final Command command;
+        long bytes;
+        // Смещение выгруженных данных в файле или -1, если данные в памяти
+        long spillOffset = -1;
+        long spillLength;
+
+        Entry(Command command) {
+            this.command = command;
+        }
+
+        boolean isSpilled() {
+            return spillOffset >= 0;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,16 @@
+package com.example.imageeditor.history;
+
+import android.graphics.Bitmap;
+
+// Владелец рабочей битмапы, которую заменяют геометрические команды
+public interface ImageHost {
+    Bitmap getImage();
+
+    // Вызывается до того, как команда изменит рабочую битмапу на месте (включая флаг premultiplied):
+    // фоновые читатели битмапы должны отпустить ее заранее
+    void beforeImageChange();
+
+    // Заменяет рабочую битмапу (или сообщает, что она изменена на месте).
+    // Прежней битмапой распоряжается вызвавшая команда
+    void setImage(Bitmap image);
+}
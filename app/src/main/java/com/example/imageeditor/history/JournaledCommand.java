@@ -0,0 +1,10 @@
+package com.example.imageeditor.history;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+// Команда, которую можно записать в журнал автосохранения и выполнить заново после перезапуска.
+// Первым байтом пишется тип записи (CommandJournal.TYPE_*), разбирает записи CommandJournal
+public interface JournaledCommand extends Command {
+    void writeJournal(DataOutputStream out) throws IOException;
+}
@@ -0,0 +1,189 @@
+package com.example.imageeditor.history;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+
+import com.example.imageeditor.utils.BitmapUtils;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Снимок части пикселей битмапы: плитки 256x256, сжатые Deflater с самым быстрым уровнем.
+// Хранятся только плитки из изменяемой области, поэтому объем зависит от нее, а не от всей битмапы
+public class RasterSnapshot {
+    public static final int TILE_SIZE = 256;
+
+    private final int width;
+    private final int height;
+    private final boolean hasAlpha;
+    private final List<Tile> tiles;
+    private long byteCount;
+
+    private RasterSnapshot(int width, int height, boolean hasAlpha, List<Tile> tiles) {
+        this.width = width;
+        this.height = height;
+        this.hasAlpha = hasAlpha;
+        this.tiles = tiles;
+        for (Tile tile : tiles) {
+            byteCount += tile.data.length;
+        }
+    }
+
+    // Сохраняет все плитки, которые не лежат целиком внутри keep (например, все, что срежет обрезка)
+    public static RasterSnapshot captureOutside(Bitmap bitmap, Rect keep) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        List<Tile> tiles = new ArrayList<>();
+
+        int[] pixels = new int[TILE_SIZE * TILE_SIZE];
+        byte[] raw = new byte[pixels.length * 4];
+        byte[] compressed = new byte[raw.length + 64];
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        boolean premultiplied = BitmapUtils.beginRawPixelAccess(bitmap);
+        try {
+            for (int y = 0; y < height; y += TILE_SIZE) {
+                int tileHeight = Math.min(TILE_SIZE, height - y);
+                for (int x = 0; x < width; x += TILE_SIZE) {
+                    int tileWidth = Math.min(TILE_SIZE, width - x);
+                    if (x >= keep.left && y >= keep.top
+                            && x + tileWidth <= keep.right && y + tileHeight <= keep.bottom) {
+                        continue;
+                    }
+                    bitmap.getPixels(pixels, 0, tileWidth, x, y, tileWidth, tileHeight);
+                    byte[] data = encodeTile(pixels, tileWidth * tileHeight, raw, compressed, deflater);
+                    tiles.add(new Tile(x, y, tileWidth, tileHeight, data));
+                }
+            }
+        } finally {
+            BitmapUtils.endRawPixelAccess(bitmap, premultiplied);
+            deflater.end();
+        }
+        return new RasterSnapshot(width, height, bitmap.hasAlpha(), tiles);
+    }
+
+    // Записывает сохраненные плитки обратно в битмапу того же размера
+    public void restore(Bitmap bitmap) throws DataFormatException {
+        int[] pixels = new int[TILE_SIZE * TILE_SIZE];
+        byte[] raw = new byte[pixels.length * 4];
+        Inflater inflater = new Inflater();
+        bitmap.setHasAlpha(hasAlpha);
+        boolean premultiplied = BitmapUtils.beginRawPixelAccess(bitmap);
+        try {
+            for (Tile tile : tiles) {
+                decodeTile(tile.data, pixels, tile.width * tile.height, raw, inflater);
+                bitmap.setPixels(pixels, 0, tile.width, tile.x, tile.y, tile.width, tile.height);
+            }
+        } finally {
+            BitmapUtils.endRawPixelAccess(bitmap, premultiplied);
+            inflater.end();
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    // Объем сжатых данных в байтах
+    public long getByteCount() {
+        return byteCount;
+    }
+
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(width);
+        out.writeInt(height);
+        out.writeBoolean(hasAlpha);
+        out.writeInt(tiles.size());
+        for (Tile tile : tiles) {
+            out.writeInt(tile.x);
+            out.writeInt(tile.y);
+            out.writeInt(tile.width);
+            out.writeInt(tile.height);
+            out.writeInt(tile.data.length);
+            out.write(tile.data);
+        }
+    }
+
+    public static RasterSnapshot readFrom(DataInputStream in) throws IOException {
+        int width = in.readInt();
+        int height = in.readInt();
+        boolean hasAlpha = in.readBoolean();
+        int count = in.readInt();
+        List<Tile> tiles = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int x = in.readInt();
+            int y = in.readInt();
+            int tileWidth = in.readInt();
+            int tileHeight = in.readInt();
+            byte[] data = new byte[in.readInt()];
+            in.readFully(data);
+            tiles.add(new Tile(x, y, tileWidth, tileHeight, data));
+        }
+        return new RasterSnapshot(width, height, hasAlpha, tiles);
+    }
+
+    // Сжимает count пикселей; raw и compressed - переиспользуемые буферы
+    static byte[] encodeTile(int[] pixels, int count, byte[] raw, byte[] compressed, Deflater deflater) {
+        ByteBuffer.wrap(raw).asIntBuffer().put(pixels, 0, count);
+        deflater.reset();
+        deflater.setInput(raw, 0, count * 4);
+        deflater.finish();
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == compressed.length) {
+                // Несжимаемые данные: Deflater может выдать чуть больше исходного размера
+                byte[] larger = new byte[compressed.length * 2];
+                System.arraycopy(compressed, 0, larger, 0, length);
+                compressed = larger;
+            }
+            length += deflater.deflate(compressed, length, compressed.length - length);
+        }
+        byte[] result = new byte[length];
+        System.arraycopy(compressed, 0, result, 0, length);
+        return result;
+    }
+
+    static void decodeTile(byte[] data, int[] pixels, int count, byte[] raw, Inflater inflater)
+            throws DataFormatException {
+        inflater.reset();
+        inflater.setInput(data);
+        int length = 0;
+        int expected = count * 4;
+        while (length < expected) {
+            int read = inflater.inflate(raw, length, expected - length);
+            if (read == 0 && (inflater.finished() || inflater.needsInput())) {
+                throw new DataFormatException("Плитка повреждена: " + length + " из " + expected + " байт");
+            }
+            length += read;
+        }
+        IntBuffer ints = ByteBuffer.wrap(raw).asIntBuffer();
+        ints.get(pixels, 0, count);
+    }
+
+    private static class Tile {
+        final int x;
+        final int y;
+        final int width;
+        final int height;
+        final byte[] data;
+
+        Tile(int x, int y, int width, int height, byte[] data) {
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+            this.data = data;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.imageeditor.history;
+
+import android.graphics.Bitmap;
+import android.graphics.Matrix;
+import android.graphics.RectF;
+
+import com.example.imageeditor.models.DrawingScene;
+import com.example.imageeditor.utils.BitmapPool;
+import com.example.imageeditor.utils.OrthogonalTransform;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+
+// Поворот изображения на угол, кратный 90 градусам. Рисунки не впекаются в изображение,
+// а поворачиваются вместе с ним; отмена - поворот на противоположный угол
+public class RotateCommand implements JournaledCommand {
+    private final ImageHost host;
+    private final DrawingScene scene;
+    private final int degrees;
+
+    public RotateCommand(ImageHost host, DrawingScene scene, int degrees) {
+        if (degrees % 90 != 0) {
+            throw new IllegalArgumentException("Поворот должен быть кратен 90 градусам: " + degrees);
+        }
+        this.host = host;
+        this.scene = scene;
+        this.degrees = degrees;
+    }
+
+    @Override
+    public void execute() {
+        rotate(degrees);
+    }
+
+    @Override
+    public void undo() {
+        rotate(-degrees);
+    }
+
+    @Override
+    public void writeJournal(DataOutputStream out) throws IOException {
+        out.writeByte(CommandJournal.TYPE_ROTATE);
+        out.writeInt(degrees);
+    }
+
+    private void rotate(int angle) {
+        Bitmap image = host.getImage();
+        // Поворот меняет флаг premultiplied исходной битмапы на время чтения пикселей
+        host.beforeImageChange();
+
+        // Поворот вокруг начала координат со сдвигом результата в положительную область
+        Matrix matrix = new Matrix();
+        matrix.setRotate(angle);
+        RectF bounds = new RectF(0, 0, image.getWidth(), image.getHeight());
+        matrix.mapRect(bounds);
+        matrix.postTranslate(-bounds.left, -bounds.top);
+
+        Bitmap rotated = OrthogonalTransform.rotate(image, angle);
+        scene.transformAll(matrix);
+        host.setImage(rotated);
+        if (rotated != image) {
+            BitmapPool.getInstance().put(image);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.imageeditor.history;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+// Команда, чьи данные можно выгрузить в файл и загрузить обратно перед undo/redo
+public interface SpillableCommand extends Command {
+    boolean canSpill();
+
+    // Записывает данные команды; освобождать их можно только в releaseSpilled после успешной записи
+    void spill(DataOutputStream out) throws IOException;
+
+    void releaseSpilled();
+
+    void restore(DataInputStream in) throws IOException;
+}
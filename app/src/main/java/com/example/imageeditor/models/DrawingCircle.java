@@ -4,6 +4,7 @@ import android.graphics.Canvas;
 import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.PointF;
+import android.graphics.RectF;
 
 public class DrawingCircle extends DrawingObject {
 
@@ -20,6 +21,15 @@ public class DrawingCircle extends DrawingObject {
         canvas.drawCircle(cx, cy, radius, paint);
     }
 
+    @Override
+    protected void computeBounds(RectF out) {
+        float cx = (startX + endX) / 2;
+        float cy = (startY + endY) / 2;
+        float radius = (float) Math.sqrt(Math.pow(endX - startX, 2) + Math.pow(endY - startY, 2)) / 2
+                + paint.getStrokeWidth() / 2;
+        out.set(cx - radius, cy - radius, cx + radius, cy + radius);
+    }
+
     @Override
     public void transform(Matrix matrix) {
         float[] points = {startX, startY, endX, endY};
@@ -28,6 +38,7 @@ public class DrawingCircle extends DrawingObject {
         startY = points[1];
         endX = points[2];
         endY = points[3];
+        invalidateBounds();
     }
 
     @Override
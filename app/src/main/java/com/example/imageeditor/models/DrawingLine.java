@@ -5,94 +5,336 @@ import android.graphics.Matrix;
 import android.graphics.Path;
 import android.graphics.Paint;
 import android.graphics.PathMeasure;
+import android.graphics.RectF;
+import android.os.Looper;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 public class DrawingLine extends DrawingObject {
-    private Path path;
-    private List<PointF> points;
+    private static final int INITIAL_CAPACITY = 64;
 
-    public static class PointF {
-        public float x, y;
+    // Сглаженная часть штриха: квадратичные кривые Безье через середины соседних отрезков.
+    // Хвост от последней середины до последней точки рисуется отдельной линией, поэтому новая
+    // точка дописывает в путь одну кривую и не требует его перестройки
+    private Path path;
+    // Сглаживается только штрих, который еще рисуется: сэмплы в нем частые, и кривые через
+    // середины почти не срезают углы. Прореженный штрих (и штрих из файла) рисуется ломаной
+    // через оставшиеся точки: по редким точкам сглаживание срезало бы угол на десятки пикселей,
+    // а ломаная отклоняется от исходных сэмплов не больше допуска прореживания и совпадает
+    // с тем, что проверяет containsPoint
+    private boolean smoothed = true;
+    // Точки штриха упакованы парами x,y в один массив без объектов-оберток
+    private float[] points;
+    private int pointCount;
 
-        public PointF(float x, float y) {
-            this.x = x;
-            this.y = y;
+    // Штрих из отображенного в память файла проекта: пока точки не нужны для изменения или
+    // проверки попадания, они остаются закодированными в файле, а в куче есть только границы.
+    // materialize подменяет точки и путь без синхронизации, поэтому штрихи сцены меняются только
+    // в UI-потоке. Фоновый экспорт рисует живую сцену, пока правки заблокированы (EditorSession)
+    private ByteBuffer mappedPoints;
+    // Сохраненные границы; отдельными полями, чтобы не держать RectF на каждый штрих
+    private float mappedLeft, mappedTop, mappedRight, mappedBottom;
+    // Буферы отрисовки еще не прочитанных штрихов, свои у каждого потока: UI-поток и экспорт
+    // рисуют одну и ту же сцену одновременно
+    private static final ThreadLocal<Scratch> scratch = new ThreadLocal<Scratch>() {
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch();
         }
+    };
+
+    private static class Scratch {
+        final Path path = new Path();
+        float[] points = new float[INITIAL_CAPACITY * 2];
     }
 
     public DrawingLine(float startX, float startY, int color, int strokeWidth) {
         super(startX, startY, color, strokeWidth);
+        initPaint();
         this.path = new Path();
         this.path.moveTo(startX, startY);
-        this.paint.setStyle(Paint.Style.STROKE);
 
-        this.points = new ArrayList<>();
-        this.points.add(new PointF(startX, startY));
+        this.points = new float[INITIAL_CAPACITY * 2];
+        this.points[0] = startX;
+        this.points[1] = startY;
+        this.pointCount = 1;
+    }
+
+    // Готовый штрих из count точек (x,y парами), например прочитанный из файла
+    DrawingLine(float[] points, int count, int color, int strokeWidth) {
+        super(points[0], points[1], color, strokeWidth);
+        initPaint();
+        this.path = new Path();
+        this.points = Arrays.copyOf(points, Math.max(count, 2) * 2);
+        this.pointCount = count;
+        this.smoothed = false;
+        this.endX = points[(count - 1) * 2];
+        this.endY = points[(count - 1) * 2 + 1];
+        rebuildPath();
+    }
+
+    // mappedPoints - точки в формате LineSerializer, от первой точки до конца записи
+    DrawingLine(ByteBuffer mappedPoints, int pointCount, float left, float top, float right, float bottom,
+                float startX, float startY, int color, int strokeWidth) {
+        super(startX, startY, color, strokeWidth);
+        initPaint();
+        this.path = new Path();
+        this.mappedPoints = mappedPoints;
+        this.mappedLeft = left;
+        this.mappedTop = top;
+        this.mappedRight = right;
+        this.mappedBottom = bottom;
+        this.pointCount = pointCount;
+        this.smoothed = false;
+    }
+
+    private void initPaint() {
+        this.paint.setStyle(Paint.Style.STROKE);
+        // Скругления скрывают стык пути и хвоста
+        this.paint.setStrokeCap(Paint.Cap.ROUND);
+        this.paint.setStrokeJoin(Paint.Join.ROUND);
     }
 
     public void addPoint(float x, float y) {
-        this.path.lineTo(x, y);
-        this.points.add(new PointF(x, y));
+        materialize();
+        // Путь наращивается инкрементально, перестраивать его при отрисовке не нужно
+        ensureCapacity(pointCount + 1);
+        points[pointCount * 2] = x;
+        points[pointCount * 2 + 1] = y;
+        pointCount++;
+        appendSegment(path, points, pointCount - 1, smoothed);
         this.endX = x;
         this.endY = y;
+        includeInBounds(x, y, paint.getStrokeWidth() / 2);
+    }
+
+    // Пакетное добавление точек (x,y парами), например всех исторических сэмплов одного MotionEvent
+    public void addPoints(float[] xy, int count) {
+        if (count <= 0) return;
+        materialize();
+        ensureCapacity(pointCount + count);
+        System.arraycopy(xy, 0, points, pointCount * 2, count * 2);
+        float halfStroke = paint.getStrokeWidth() / 2;
+        for (int i = 0; i < count; i++) {
+            appendSegment(path, points, pointCount + i, smoothed);
+            includeInBounds(xy[i * 2], xy[i * 2 + 1], halfStroke);
+        }
+        pointCount += count;
+        this.endX = xy[(count - 1) * 2];
+        this.endY = xy[(count - 1) * 2 + 1];
+    }
+
+    // Прореживает штрих алгоритмом Рамера-Дугласа-Пекера при завершении рисования;
+    // дальше штрих рисуется ломаной через оставшиеся точки
+    public void simplify(float tolerance) {
+        materialize();
+        int simplified = StrokeFilter.simplify(points, pointCount, tolerance);
+        if (simplified != pointCount) {
+            pointCount = simplified;
+            // Лишняя емкость после прореживания не нужна
+            points = Arrays.copyOf(points, Math.max(pointCount, 2) * 2);
+        }
+        smoothed = false;
+        rebuildPath();
+        invalidateBounds();
+    }
+
+    // Дописывает отрезок к точке index либо, для сглаженного штриха, кривую,
+    // которая заканчивается в середине между точками index - 1 и index
+    private static void appendSegment(Path path, float[] points, int index, boolean smoothed) {
+        if (!smoothed) {
+            if (index >= 1) path.lineTo(points[index * 2], points[index * 2 + 1]);
+            return;
+        }
+        if (index < 2) return;
+        int p = (index - 1) * 2;
+        path.quadTo(points[p], points[p + 1],
+                (points[p] + points[p + 2]) / 2, (points[p + 1] + points[p + 3]) / 2);
+    }
+
+    @Override
+    public long estimateBytes() {
+        // Точки еще в файле проекта: в куче только сам объект
+        if (mappedPoints != null) return super.estimateBytes();
+        // Массив точек и примерно столько же на нативный Path
+        return super.estimateBytes() + points.length * 4L + pointCount * 8L;
+    }
+
+    public int getPointCount() {
+        return pointCount;
+    }
+
+    public float getPointX(int index) {
+        materialize();
+        return points[index * 2];
+    }
+
+    public float getPointY(int index) {
+        materialize();
+        return points[index * 2 + 1];
+    }
+
+    // Точки еще не прочитаны из отображенного файла проекта
+    boolean isMapped() {
+        return mappedPoints != null;
+    }
+
+    // Закодированные точки для записи в новый файл проекта без декодирования
+    ByteBuffer getMappedPoints() {
+        return mappedPoints.duplicate();
+    }
+
+    // Читает точки из файла проекта в массив; дальше штрих ведет себя как обычный
+    private void materialize() {
+        if (mappedPoints == null) return;
+        float[] loaded = new float[Math.max(pointCount, 2) * 2];
+        try {
+            DrawingSerializers.LineSerializer.readPoints(mappedPoints.duplicate(), loaded, pointCount);
+        } catch (IOException | RuntimeException e) {
+            // Поврежденный хвост файла: остается только начальная точка штриха
+            loaded[0] = startX;
+            loaded[1] = startY;
+            pointCount = 1;
+        }
+        mappedPoints = null;
+        points = loaded;
+        startX = points[0];
+        startY = points[1];
+        endX = points[(pointCount - 1) * 2];
+        endY = points[(pointCount - 1) * 2 + 1];
+        rebuildPath();
+        invalidateBounds();
+    }
+
+    private void ensureCapacity(int count) {
+        if (count * 2 > points.length) {
+            points = Arrays.copyOf(points, Math.max(count * 2, points.length * 2));
+        }
     }
 
     @Override
     public void draw(Canvas canvas) {
-        // Перестраиваем путь из точек для точного рендеринга
-        Path drawPath = new Path();
-        if (!points.isEmpty()) {
-            drawPath.moveTo(points.get(0).x, points.get(0).y);
-            for (int i = 1; i < points.size(); i++) {
-                drawPath.lineTo(points.get(i).x, points.get(i).y);
+        if (mappedPoints != null) {
+            drawMapped(canvas);
+            return;
+        }
+        canvas.drawPath(path, paint);
+        if (smoothed || pointCount == 1) {
+            drawTail(canvas, points, pointCount, paint);
+        }
+    }
+
+    // Отрисовка прямо из файла проекта во временный путь, без сохранения точек в объекте
+    private void drawMapped(Canvas canvas) {
+        Scratch buffers = scratch.get();
+        if (buffers.points.length < pointCount * 2) {
+            buffers.points = new float[pointCount * 2];
+        }
+        float[] scratchPoints = buffers.points;
+        Path scratchPath = buffers.path;
+        try {
+            DrawingSerializers.LineSerializer.readPoints(mappedPoints.duplicate(), scratchPoints, pointCount);
+        } catch (IOException | RuntimeException e) {
+            // Поврежденные точки читаются один раз в UI-потоке; фоновый поток штрих не меняет
+            if (Looper.getMainLooper().isCurrentThread()) {
+                materialize();
+                draw(canvas);
             }
+            return;
+        }
+        scratchPath.rewind();
+        scratchPath.moveTo(scratchPoints[0], scratchPoints[1]);
+        for (int i = 1; i < pointCount; i++) {
+            appendSegment(scratchPath, scratchPoints, i, false);
         }
-        canvas.drawPath(drawPath, paint);
+        canvas.drawPath(scratchPath, paint);
+        if (pointCount == 1) {
+            drawTail(canvas, scratchPoints, pointCount, paint);
+        }
+    }
+
+    private static void drawTail(Canvas canvas, float[] points, int pointCount, Paint paint) {
+        // Хвост начинается в конце пути: в середине последнего отрезка или в первой точке.
+        // У штриха из одной точки это точка под пальцем, которую путь без отрезков не рисует
+        int last = (pointCount - 1) * 2;
+        float tailX = points[0];
+        float tailY = points[1];
+        if (pointCount > 2) {
+            tailX = (points[last - 2] + points[last]) / 2;
+            tailY = (points[last - 1] + points[last + 1]) / 2;
+        }
+        canvas.drawLine(tailX, tailY, points[last], points[last + 1], paint);
     }
 
     @Override
-    public void transform(Matrix matrix) {
-        // Трансформируем все точки
-        path.reset();
-        boolean first = true;
-
-        for (PointF point : points) {
-            float[] pt = {point.x, point.y};
-            matrix.mapPoints(pt);
-            point.x = pt[0];
-            point.y = pt[1];
-
-            if (first) {
-                path.moveTo(point.x, point.y);
-                startX = point.x;
-                startY = point.y;
-                first = false;
-            } else {
-                path.lineTo(point.x, point.y);
-            }
+    protected void computeBounds(RectF out) {
+        // Границы сохранены в записи файла проекта вместе с точками
+        if (mappedPoints != null) {
+            out.set(mappedLeft, mappedTop, mappedRight, mappedBottom);
+            return;
         }
+        float left = points[0];
+        float top = points[1];
+        float right = left;
+        float bottom = top;
+        for (int i = 1; i < pointCount; i++) {
+            float x = points[i * 2];
+            float y = points[i * 2 + 1];
+            if (x < left) left = x;
+            if (x > right) right = x;
+            if (y < top) top = y;
+            if (y > bottom) bottom = y;
+        }
+        float halfStroke = paint.getStrokeWidth() / 2;
+        out.set(left - halfStroke, top - halfStroke, right + halfStroke, bottom + halfStroke);
+    }
 
-        if (!points.isEmpty()) {
-            PointF lastPoint = points.get(points.size() - 1);
-            endX = lastPoint.x;
-            endY = lastPoint.y;
+    @Override
+    public void transform(Matrix matrix) {
+        materialize();
+        // Все точки трансформируются одним вызовом
+        matrix.mapPoints(points, 0, points, 0, pointCount);
+
+        startX = points[0];
+        startY = points[1];
+        endX = points[(pointCount - 1) * 2];
+        endY = points[(pointCount - 1) * 2 + 1];
+
+        // После трансформации путь строится заново из точек
+        rebuildPath();
+        invalidateBounds();
+    }
+
+    private void rebuildPath() {
+        path.rewind();
+        path.moveTo(points[0], points[1]);
+        for (int i = 1; i < pointCount; i++) {
+            appendSegment(path, points, i, smoothed);
         }
     }
 
     @Override
     public boolean containsPoint(float x, float y) {
-        // Проверка близости точки к любому сегменту пути
+        // Проверка близости точки к любому отрезку ломаной, которой рисуется зафиксированный штрих;
+        // сравниваются квадраты расстояний
         float threshold = paint.getStrokeWidth() + 10;
+        float thresholdSquared = threshold * threshold;
+        // Точки из файла читаются, только если касание рядом со штрихом
+        if (mappedPoints != null) {
+            if (x < mappedLeft - threshold || x > mappedRight + threshold
+                    || y < mappedTop - threshold || y > mappedBottom + threshold) {
+                return false;
+            }
+            materialize();
+        }
 
-        for (int i = 0; i < points.size() - 1; i++) {
-            PointF p1 = points.get(i);
-            PointF p2 = points.get(i + 1);
+        for (int i = 0; i < pointCount - 1; i++) {
+            int p = i * 2;
 
-            // Расстояние от точки до отрезка
-            float distance = distanceToSegment(x, y, p1.x, p1.y, p2.x, p2.y);
-            if (distance <= threshold) {
+            float distanceSquared = distanceToSegmentSquared(x, y, points[p], points[p + 1], points[p + 2], points[p + 3]);
+            if (distanceSquared <= thresholdSquared) {
                 return true;
             }
         }
@@ -100,8 +342,8 @@ public class DrawingLine extends DrawingObject {
         return false;
     }
 
-    // Метод для расчета расстояния от точки до отрезка
-    private float distanceToSegment(float x, float y, float x1, float y1, float x2, float y2) {
+    // Квадрат расстояния от точки до отрезка
+    private float distanceToSegmentSquared(float x, float y, float x1, float y1, float x2, float y2) {
         float A = x - x1;
         float B = y - y1;
         float C = x2 - x1;
@@ -129,6 +371,6 @@ public class DrawingLine extends DrawingObject {
 
         float dx = x - xx;
         float dy = y - yy;
-        return (float) Math.sqrt(dx * dx + dy * dy);
+        return dx * dx + dy * dy;
     }
 }
\ No newline at end of file
@@ -3,13 +3,22 @@ package com.example.imageeditor.models;
 import android.graphics.Canvas;
 import android.graphics.Paint;
 import android.graphics.Matrix;
+import android.graphics.RectF;
 
 public abstract class DrawingObject {
+    // Запас вокруг границ фигур, в котором containsPoint еще может сработать
+    private static final float HIT_SLOP = 20f;
+
     protected float startX;
     protected float startY;
     protected float endX;
     protected float endY;
     protected Paint paint;
+    // Стабильный идентификатор, назначается сценой при первом добавлении
+    private long id;
+    // Границы пересчитываются только после изменения геометрии, а не при каждом кадре
+    private final RectF cachedBounds = new RectF();
+    private boolean boundsValid;
 
     public DrawingObject(float startX, float startY, int color, int strokeWidth) {
         this.startX = startX;
@@ -27,11 +36,21 @@ public abstract class DrawingObject {
     public void updateEndPoint(float endX, float endY) {
         this.endX = endX;
         this.endY = endY;
+        invalidateBounds();
     }
 
     public void updateStartPoint(float startX, float startY) {
         this.startX = startX;
         this.startY = startY;
+        invalidateBounds();
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    void setId(long id) {
+        this.id = id;
     }
 
     // Добавляем геттеры
@@ -51,11 +70,59 @@ public abstract class DrawingObject {
         return endY;
     }
 
+    public float getStrokeWidth() {
+        return paint.getStrokeWidth();
+    }
+
+    public int getColor() {
+        return paint.getColor();
+    }
+
+    // Примерный размер объекта в памяти вместе с Paint
+    public long estimateBytes() {
+        return 128;
+    }
+
+    // Границы объекта в координатах изображения с учетом толщины линии
+    public final void getBounds(RectF out) {
+        if (!boundsValid) {
+            computeBounds(cachedBounds);
+            boundsValid = true;
+        }
+        out.set(cachedBounds);
+    }
+
+    // Вызывается наследниками при любом изменении геометрии или размеров объекта
+    protected void invalidateBounds() {
+        boundsValid = false;
+    }
+
+    // Расширяет кэшированные границы точкой, не пересчитывая их целиком
+    protected void includeInBounds(float x, float y, float padding) {
+        if (boundsValid) {
+            cachedBounds.union(x - padding, y - padding, x + padding, y + padding);
+        }
+    }
+
+    protected void computeBounds(RectF out) {
+        float halfStroke = paint.getStrokeWidth() / 2;
+        out.set(Math.min(startX, endX) - halfStroke,
+                Math.min(startY, endY) - halfStroke,
+                Math.max(startX, endX) + halfStroke,
+                Math.max(startY, endY) + halfStroke);
+    }
+
     public abstract void draw(Canvas canvas);
 
     // Метод для трансформации объекта при изменении изображения
     public abstract void transform(Matrix matrix);
 
+    // Насколько дальше границ getBounds может сработать containsPoint; с этим запасом объект
+    // индексируется в сетке сцены, иначе hitTest его не найдет
+    public float getHitSlop() {
+        return paint.getStrokeWidth() + HIT_SLOP;
+    }
+
     public boolean containsPoint(float x, float y) {
         // Базовая проверка, переопределяется в наследниках
         float padding = paint.getStrokeWidth() + 10;
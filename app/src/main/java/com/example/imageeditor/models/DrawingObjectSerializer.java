@@ -0,0 +1,17 @@
+package com.example.imageeditor.models;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+// Запись и чтение тела записи одного типа объектов в файле проекта. Общие поля
+// (тип, длина, id, цвет, толщина) пишет ProjectFile
+public interface DrawingObjectSerializer<T extends DrawingObject> {
+    // Тип записи в файле; однажды выданный номер не меняется между версиями формата
+    byte getType();
+
+    Class<T> getObjectClass();
+
+    void write(T object, ProjectOutput out);
+
+    T read(ByteBuffer in, int color, float strokeWidth) throws IOException;
+}
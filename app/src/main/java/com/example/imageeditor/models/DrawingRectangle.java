@@ -28,6 +28,7 @@ public class DrawingRectangle extends DrawingObject {
         startY = points[1];
         endX = points[2];
         endY = points[3];
+        invalidateBounds();
     }
 
     @Override
@@ -0,0 +1,139 @@
+package com.example.imageeditor.models;
+
+import android.graphics.Matrix;
+import android.graphics.RectF;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.RandomAccess;
+
+// Упорядоченный список объектов сцены со стабильными идентификаторами.
+// Команды истории запоминают позицию объекта, поэтому добавление и удаление не требуют
+// линейного поиска; вставка и удаление в конце списка выполняются за O(1).
+// Поиск объектов по точке и области идет через равномерную сетку по их границам
+public class DrawingScene extends AbstractList<DrawingObject> implements RandomAccess {
+    // Размер ячейки сетки в пикселях изображения
+    private static final float GRID_CELL_SIZE = 128f;
+    // Объекты добавляются в конец с возрастающими id, поэтому порядок id совпадает с порядком отрисовки
+    private static final Comparator<DrawingObject> DRAW_ORDER = (a, b) -> Long.compare(a.getId(), b.getId());
+
+    private final ArrayList<DrawingObject> objects = new ArrayList<>();
+    private final SpatialGrid<DrawingObject> grid = new SpatialGrid<>(GRID_CELL_SIZE);
+    private final RectF bounds = new RectF();
+    private final ArrayList<DrawingObject> candidates = new ArrayList<>();
+    // Суммарная геометрия правок изображения (поворот, отражение, обрезка) от исходной битмапы
+    private final Matrix imageTransform = new Matrix();
+    private long nextId = 1;
+
+    @Override
+    public DrawingObject get(int index) {
+        return objects.get(index);
+    }
+
+    @Override
+    public int size() {
+        return objects.size();
+    }
+
+    // Добавляет объект в конец и возвращает его позицию
+    public int append(DrawingObject object) {
+        insert(objects.size(), object);
+        return objects.size() - 1;
+    }
+
+    public void insert(int index, DrawingObject object) {
+        if (object.getId() == 0) {
+            object.setId(nextId++);
+        } else if (object.getId() >= nextId) {
+            nextId = object.getId() + 1;
+        }
+        objects.add(index, object);
+        index(object);
+        modCount++;
+    }
+
+    public DrawingObject removeAt(int index) {
+        modCount++;
+        DrawingObject object = objects.remove(index);
+        grid.remove(object);
+        return object;
+    }
+
+    // Трансформирует все объекты (поворот, отражение, обрезка изображения) и обновляет сетку
+    public void transformAll(Matrix matrix) {
+        grid.clear();
+        for (int i = 0, size = objects.size(); i < size; i++) {
+            DrawingObject object = objects.get(i);
+            object.transform(matrix);
+            index(object);
+        }
+        imageTransform.postConcat(matrix);
+    }
+
+    // Матрица из координат исходной битмапы в координаты текущей (9 значений в out)
+    public void getImageTransform(float[] out) {
+        imageTransform.getValues(out);
+    }
+
+    public void setImageTransform(float[] values) {
+        imageTransform.setValues(values);
+    }
+
+    // Вызывается при загрузке нового исходного изображения
+    public void resetImageTransform() {
+        imageTransform.reset();
+    }
+
+    // Вызывается после изменения границ объекта, уже находящегося в сцене
+    public void updateBounds(DrawingObject object) {
+        index(object);
+    }
+
+    // Верхний объект под точкой или null
+    public DrawingObject hitTest(float x, float y) {
+        candidates.clear();
+        grid.query(x, y, x, y, candidates);
+        DrawingObject topmost = null;
+        for (int i = 0, size = candidates.size(); i < size; i++) {
+            DrawingObject candidate = candidates.get(i);
+            if ((topmost == null || candidate.getId() > topmost.getId()) && candidate.containsPoint(x, y)) {
+                topmost = candidate;
+            }
+        }
+        candidates.clear();
+        return topmost;
+    }
+
+    // Добавляет в out объекты, чьи границы могут пересекать область, в порядке отрисовки
+    public void query(RectF area, List<DrawingObject> out) {
+        int start = out.size();
+        grid.query(area.left, area.top, area.right, area.bottom, out);
+        Collections.sort(out.subList(start, out.size()), DRAW_ORDER);
+    }
+
+    private void index(DrawingObject object) {
+        object.getBounds(bounds);
+        float slop = object.getHitSlop();
+        grid.insert(object, bounds.left - slop, bounds.top - slop, bounds.right + slop, bounds.bottom + slop);
+    }
+
+    @Override
+    public void add(int index, DrawingObject object) {
+        insert(index, object);
+    }
+
+    @Override
+    public DrawingObject remove(int index) {
+        return removeAt(index);
+    }
+
+    @Override
+    public void clear() {
+        objects.clear();
+        grid.clear();
+        modCount++;
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.imageeditor.models;
+
+import android.graphics.RectF;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+// Сериализаторы всех типов объектов рисования: файл проекта, выгрузка истории и журнал сессии
+public final class DrawingSerializers {
+    // Точки штриха хранятся в фиксированной точке с шагом 1/64 пикселя
+    public static final float POINT_SCALE = 64f;
+
+    private static final DrawingObjectSerializer<?>[] SERIALIZERS = {
+            new LineSerializer(),
+            new ShapeSerializer<>((byte) 2, DrawingRectangle.class, DrawingRectangle::new),
+            new ShapeSerializer<>((byte) 3, DrawingCircle.class, DrawingCircle::new),
+            new TextSerializer()
+    };
+
+    private DrawingSerializers() {
+    }
+
+    @SuppressWarnings("unchecked")
+    public static DrawingObjectSerializer<DrawingObject> forObject(DrawingObject object) throws IOException {
+        for (DrawingObjectSerializer<?> serializer : SERIALIZERS) {
+            if (serializer.getObjectClass() == object.getClass()) {
+                return (DrawingObjectSerializer<DrawingObject>) serializer;
+            }
+        }
+        throw new IOException("Неизвестный тип объекта: " + object.getClass().getName());
+    }
+
+    // null для типа из более новой версии формата; такую запись можно пропустить по длине
+    public static DrawingObjectSerializer<?> forType(byte type) {
+        for (DrawingObjectSerializer<?> serializer : SERIALIZERS) {
+            if (serializer.getType() == type) {
+                return serializer;
+            }
+        }
+        return null;
+    }
+
+    // Тело: границы (4 float), количество точек, затем координаты в фиксированной точке:
+    // первая точка целиком, остальные - разностью с предыдущей, все через zigzag varint
+    static class LineSerializer implements DrawingObjectSerializer<DrawingLine> {
+        static final byte TYPE = 1;
+
+        @Override
+        public byte getType() {
+            return TYPE;
+        }
+
+        @Override
+        public Class<DrawingLine> getObjectClass() {
+            return DrawingLine.class;
+        }
+
+        @Override
+        public void write(DrawingLine line, ProjectOutput out) {
+            RectF bounds = new RectF();
+            line.getBounds(bounds);
+            out.putFloat(bounds.left);
+            out.putFloat(bounds.top);
+            out.putFloat(bounds.right);
+            out.putFloat(bounds.bottom);
+
+            int count = line.getPointCount();
+            out.putVarInt(count);
+            // Штрих из отображенного файла еще не прочитан: точки уже закодированы в том же формате
+            if (line.isMapped()) {
+                out.putBytes(line.getMappedPoints());
+                return;
+            }
+            int previousX = 0;
+            int previousY = 0;
+            for (int i = 0; i < count; i++) {
+                int x = Math.round(line.getPointX(i) * POINT_SCALE);
+                int y = Math.round(line.getPointY(i) * POINT_SCALE);
+                out.putSignedVarInt(x - previousX);
+                out.putSignedVarInt(y - previousY);
+                previousX = x;
+                previousY = y;
+            }
+        }
+
+        @Override
+        public DrawingLine read(ByteBuffer in, int color, float strokeWidth) throws IOException {
+            // Границы нужны только для ленивой загрузки
+            in.position(in.position() + 16);
+            int count = ProjectInput.getVarInt(in);
+            if (count <= 0) {
+                throw new IOException("Пустой штрих");
+            }
+            float[] points = new float[count * 2];
+            readPoints(in, points, count);
+            return new DrawingLine(points, count, color, Math.round(strokeWidth));
+        }
+
+        // Штрих, точки которого остаются в буфере до первого изменения; in указывает на тело записи,
+        // bodyEnd - ее конец. Читаются только границы и первая точка
+        DrawingLine readMapped(ByteBuffer in, int bodyEnd, int color, float strokeWidth) throws IOException {
+            float left = in.getFloat();
+            float top = in.getFloat();
+            float right = in.getFloat();
+            float bottom = in.getFloat();
+            int count = ProjectInput.getVarInt(in);
+            if (count <= 0) {
+                throw new IOException("Пустой штрих");
+            }
+            ByteBuffer mappedPoints = in.duplicate();
+            mappedPoints.limit(bodyEnd);
+            mappedPoints = mappedPoints.slice();
+            float[] start = new float[2];
+            readPoints(in, start, 1);
+            return new DrawingLine(mappedPoints, count, left, top, right, bottom,
+                    start[0], start[1], color, Math.round(strokeWidth));
+        }
+
+        static void readPoints(ByteBuffer in, float[] points, int count) throws IOException {
+            int x = 0;
+            int y = 0;
+            for (int i = 0; i < count; i++) {
+                x += ProjectInput.getSignedVarInt(in);
+                y += ProjectInput.getSignedVarInt(in);
+                points[i * 2] = x / POINT_SCALE;
+                points[i * 2 + 1] = y / POINT_SCALE;
+            }
+        }
+    }
+
+    interface ShapeFactory<T extends DrawingObject> {
+        T create(float startX, float startY, int color, int strokeWidth);
+    }
+
+    // Тело: начальная и конечная точки (4 float)
+    static class ShapeSerializer<T extends DrawingObject> implements DrawingObjectSerializer<T> {
+        private final byte type;
+        private final Class<T> objectClass;
+        private final ShapeFactory<T> factory;
+
+        ShapeSerializer(byte type, Class<T> objectClass, ShapeFactory<T> factory) {
+            this.type = type;
+            this.objectClass = objectClass;
+            this.factory = factory;
+        }
+
+        @Override
+        public byte getType() {
+            return type;
+        }
+
+        @Override
+        public Class<T> getObjectClass() {
+            return objectClass;
+        }
+
+        @Override
+        public void write(T shape, ProjectOutput out) {
+            out.putFloat(shape.getStartX());
+            out.putFloat(shape.getStartY());
+            out.putFloat(shape.getEndX());
+            out.putFloat(shape.getEndY());
+        }
+
+        @Override
+        public T read(ByteBuffer in, int color, float strokeWidth) {
+            T shape = factory.create(in.getFloat(), in.getFloat(), color, Math.round(strokeWidth));
+            shape.updateEndPoint(in.getFloat(), in.getFloat());
+            return shape;
+        }
+    }
+
+    // Тело: точка привязки, текст, шрифт, стиль, размер и матрица ориентации (9 float)
+    static class TextSerializer implements DrawingObjectSerializer<DrawingText> {
+        static final byte TYPE = 4;
+
+        @Override
+        public byte getType() {
+            return TYPE;
+        }
+
+        @Override
+        public Class<DrawingText> getObjectClass() {
+            return DrawingText.class;
+        }
+
+        @Override
+        public void write(DrawingText text, ProjectOutput out) {
+            out.putFloat(text.getStartX());
+            out.putFloat(text.getStartY());
+            out.putString(text.getText());
+            out.putString(text.getFontFamily() != null ? text.getFontFamily() : "");
+            out.putVarInt(text.getTextStyle());
+            out.putVarInt(text.getTextSize());
+            float[] orientation = new float[9];
+            text.getOrientation(orientation);
+            for (float value : orientation) {
+                out.putFloat(value);
+            }
+        }
+
+        @Override
+        public DrawingText read(ByteBuffer in, int color, float strokeWidth) throws IOException {
+            float x = in.getFloat();
+            float y = in.getFloat();
+            String value = ProjectInput.getString(in);
+            String fontFamily = ProjectInput.getString(in);
+            int textStyle = ProjectInput.getVarInt(in);
+            int textSize = ProjectInput.getVarInt(in);
+            DrawingText text = new DrawingText(x, y, value, fontFamily, textStyle, textSize, color);
+            float[] values = new float[9];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = in.getFloat();
+            }
+            text.setOrientation(values);
+            return text;
+        }
+    }
+}
@@ -4,13 +4,24 @@ import android.graphics.Canvas;
 import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.Rect;
+import android.graphics.RectF;
 import android.graphics.Typeface;
 
 public class DrawingText extends DrawingObject {
+    private static final int HIT_PADDING = 20;
+
     private String text;
     private String fontFamily;
     private int textStyle;
     private int textSize;
+    // Размеры текста измеряются заново только после смены текста, шрифта или размера
+    private final Rect textBounds = new Rect();
+    private boolean textMeasured;
+    // Поворот и отражение текста относительно точки привязки после геометрических операций
+    private final Matrix orientation = new Matrix();
+    private final float[] orientationValues = new float[9];
+    private final Matrix inverseOrientation = new Matrix();
+    private final float[] hitPoint = new float[2];
 
     public DrawingText(float x, float y, String text, String fontFamily, int textStyle, int textSize, int color) {
         super(x, y, color, 1);
@@ -26,7 +37,22 @@ public class DrawingText extends DrawingObject {
 
     @Override
     public void draw(Canvas canvas) {
-        canvas.drawText(text, startX, startY, paint);
+        if (orientation.isIdentity()) {
+            canvas.drawText(text, startX, startY, paint);
+            return;
+        }
+        int saveCount = canvas.save();
+        canvas.translate(startX, startY);
+        canvas.concat(orientation);
+        canvas.drawText(text, 0, 0, paint);
+        canvas.restoreToCount(saveCount);
+    }
+
+    @Override
+    protected void computeBounds(RectF out) {
+        out.set(measureText());
+        orientation.mapRect(out);
+        out.offset(startX, startY);
     }
 
     @Override
@@ -37,24 +63,78 @@ public class DrawingText extends DrawingObject {
         startY = points[1];
         endX = startX;
         endY = startY;
+
+        // Текст поворачивается и отражается вместе с изображением; сдвиг уже учтен в точке привязки
+        orientation.postConcat(matrix);
+        orientation.getValues(orientationValues);
+        orientationValues[Matrix.MTRANS_X] = 0;
+        orientationValues[Matrix.MTRANS_Y] = 0;
+        orientation.setValues(orientationValues);
+        orientation.invert(inverseOrientation);
+        invalidateBounds();
     }
 
     @Override
     public boolean containsPoint(float x, float y) {
-        Rect bounds = new Rect();
-        paint.getTextBounds(text, 0, text.length(), bounds);
-        bounds.offset((int)startX, (int)startY);
+        if (!orientation.isIdentity()) {
+            // Переводим точку в систему координат неповернутого текста
+            hitPoint[0] = x - startX;
+            hitPoint[1] = y - startY;
+            inverseOrientation.mapPoints(hitPoint);
+            x = hitPoint[0] + startX;
+            y = hitPoint[1] + startY;
+        }
+
+        Rect bounds = measureText();
+        float left = bounds.left + startX - HIT_PADDING;
+        float top = bounds.top + startY - paint.getTextSize() - HIT_PADDING;
+        float right = bounds.right + startX + HIT_PADDING;
+        float bottom = bounds.bottom + startY + HIT_PADDING;
+
+        return x >= left && x < right && y >= top && y < bottom;
+    }
+
+    // Касание засчитывается и на высоту строки выше текста (см. containsPoint)
+    @Override
+    public float getHitSlop() {
+        return paint.getTextSize() + HIT_PADDING;
+    }
+
+    @Override
+    public long estimateBytes() {
+        return super.estimateBytes() + text.length() * 2L;
+    }
+
+    public String getText() {
+        return text;
+    }
 
-        bounds.top -= paint.getTextSize();
+    public String getFontFamily() {
+        return fontFamily;
+    }
 
-        int padding = 20;
-        bounds.inset(-padding, -padding);
+    public int getTextStyle() {
+        return textStyle;
+    }
+
+    public int getTextSize() {
+        return textSize;
+    }
 
-        return bounds.contains((int)x, (int)y);
+    // Матрица ориентации текста (9 значений) для сохранения и восстановления
+    public void getOrientation(float[] values) {
+        orientation.getValues(values);
+    }
+
+    public void setOrientation(float[] values) {
+        orientation.setValues(values);
+        orientation.invert(inverseOrientation);
+        invalidateBounds();
     }
 
     public void setText(String text) {
         this.text = text;
+        invalidateText();
     }
 
     public void setFontFamily(String fontFamily) {
@@ -70,9 +150,24 @@ public class DrawingText extends DrawingObject {
     public void setTextSize(int textSize) {
         this.textSize = textSize;
         this.paint.setTextSize(textSize);
+        invalidateText();
     }
 
     private void updateTypeface() {
         this.paint.setTypeface(Typeface.create(fontFamily, textStyle));
+        invalidateText();
+    }
+
+    private Rect measureText() {
+        if (!textMeasured) {
+            paint.getTextBounds(text, 0, text.length(), textBounds);
+            textMeasured = true;
+        }
+        return textBounds;
+    }
+
+    private void invalidateText() {
+        textMeasured = false;
+        invalidateBounds();
     }
 }
\ No newline at end of file
@@ -0,0 +1,271 @@
+package com.example.imageeditor.models;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Файл проекта для повторного открытия редактируемой сессии. Растр не сохраняется: файл ссылается
+// на исходное изображение и хранит суммарную геометрию правок, по которой оно восстанавливается.
+// Формат: магическое число и версия, исходное изображение (URI и размер при загрузке),
+// размер и матрица текущего изображения, затем записи объектов. Каждая запись - тип, длина тела
+// и само тело, поэтому записи неизвестных типов из более новых версий пропускаются
+public class ProjectFile {
+    public static final String EXTENSION = ".iep";
+    static final int MAGIC = 0x49455052; // "IEPR"
+    static final int VERSION = 1;
+
+    private final String baseImageUri;
+    private final int baseWidth;
+    private final int baseHeight;
+    private final int imageWidth;
+    private final int imageHeight;
+    private final float[] imageTransform;
+    private final List<DrawingObject> objects;
+
+    public ProjectFile(String baseImageUri, int baseWidth, int baseHeight,
+                       int imageWidth, int imageHeight, float[] imageTransform, List<DrawingObject> objects) {
+        this.baseImageUri = baseImageUri;
+        this.baseWidth = baseWidth;
+        this.baseHeight = baseHeight;
+        this.imageWidth = imageWidth;
+        this.imageHeight = imageHeight;
+        this.imageTransform = imageTransform.clone();
+        this.objects = objects;
+    }
+
+    public String getBaseImageUri() {
+        return baseImageUri;
+    }
+
+    public int getBaseWidth() {
+        return baseWidth;
+    }
+
+    public int getBaseHeight() {
+        return baseHeight;
+    }
+
+    public int getImageWidth() {
+        return imageWidth;
+    }
+
+    public int getImageHeight() {
+        return imageHeight;
+    }
+
+    // Матрица из координат исходного изображения в координаты текущего (9 значений)
+    public float[] getImageTransform() {
+        return imageTransform.clone();
+    }
+
+    public List<DrawingObject> getObjects() {
+        return Collections.unmodifiableList(objects);
+    }
+
+    public ByteBuffer encode() throws IOException {
+        ProjectOutput out = new ProjectOutput(256 + objects.size() * 64);
+        out.putInt(MAGIC);
+        out.putVarInt(VERSION);
+        out.putString(baseImageUri);
+        out.putVarInt(baseWidth);
+        out.putVarInt(baseHeight);
+        out.putVarInt(imageWidth);
+        out.putVarInt(imageHeight);
+        for (float value : imageTransform) {
+            out.putFloat(value);
+        }
+
+        writeObjects(out, objects);
+        return out.toByteBuffer();
+    }
+
+    // Только записи объектов, без заголовка проекта
+    public static ByteBuffer encodeObjects(List<DrawingObject> objects) throws IOException {
+        ProjectOutput out = new ProjectOutput(16 + objects.size() * 64);
+        writeObjects(out, objects);
+        return out.toByteBuffer();
+    }
+
+    public static List<DrawingObject> decodeObjects(ByteBuffer in) throws IOException {
+        return readObjects(in, ProjectInput.getVarInt(in), false);
+    }
+
+    // Один объект в формате записей проекта, с длиной впереди: так его выгружает история
+    // и записывает журнал автосохранения, с теми же сериализаторами и сжатыми точками штрихов
+    public static void writeObject(DataOutput out, DrawingObject object) throws IOException {
+        ByteBuffer record = encodeObjects(Collections.singletonList(object));
+        out.writeInt(record.remaining());
+        out.write(record.array(), record.arrayOffset() + record.position(), record.remaining());
+    }
+
+    public static DrawingObject readObject(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length <= 0) {
+            throw new IOException("Поврежденная запись объекта: " + length);
+        }
+        byte[] record = new byte[length];
+        in.readFully(record);
+        List<DrawingObject> objects = decodeObjects(ByteBuffer.wrap(record));
+        if (objects.size() != 1) {
+            throw new IOException("Неизвестный тип объекта в записи");
+        }
+        return objects.get(0);
+    }
+
+    private static void writeObjects(ProjectOutput out, List<DrawingObject> objects) throws IOException {
+        out.putVarInt(objects.size());
+        long previousId = 0;
+        for (DrawingObject object : objects) {
+            DrawingObjectSerializer<DrawingObject> serializer = DrawingSerializers.forObject(object);
+            out.putByte(serializer.getType());
+            int lengthPosition = out.position();
+            out.putInt(0);
+            int bodyStart = out.position();
+            // id растут в порядке отрисовки, поэтому разность обычно умещается в один байт
+            out.putSignedVarLong(object.getId() - previousId);
+            previousId = object.getId();
+            out.putInt(object.getColor());
+            out.putFloat(object.getStrokeWidth());
+            serializer.write(object, out);
+            out.putIntAt(lengthPosition, out.position() - bodyStart);
+        }
+    }
+
+    public static ProjectFile decode(ByteBuffer in) throws IOException {
+        return decode(in, false);
+    }
+
+    // mappedStrokes: точки штрихов не читаются, а остаются в in (см. map)
+    static ProjectFile decode(ByteBuffer in, boolean mappedStrokes) throws IOException {
+        Header header = readHeader(in);
+        List<DrawingObject> objects = readObjects(in, header.objectCount, mappedStrokes);
+        return new ProjectFile(header.baseImageUri, header.baseWidth, header.baseHeight,
+                header.imageWidth, header.imageHeight, header.imageTransform, objects);
+    }
+
+    private static List<DrawingObject> readObjects(ByteBuffer in, int count, boolean mappedStrokes)
+            throws IOException {
+        List<DrawingObject> objects = new ArrayList<>(count);
+        long previousId = 0;
+        for (int i = 0; i < count; i++) {
+            byte type = in.get();
+            int length = in.getInt();
+            int bodyEnd = in.position() + length;
+            if (length < 0 || bodyEnd > in.limit()) {
+                throw new IOException("Запись объекта выходит за пределы файла");
+            }
+            long id = previousId + ProjectInput.getSignedVarLong(in);
+            previousId = id;
+            int color = in.getInt();
+            float strokeWidth = in.getFloat();
+
+            DrawingObjectSerializer<?> serializer = DrawingSerializers.forType(type);
+            if (mappedStrokes && serializer instanceof DrawingSerializers.LineSerializer) {
+                DrawingObject object = ((DrawingSerializers.LineSerializer) serializer)
+                        .readMapped(in, bodyEnd, color, strokeWidth);
+                object.setId(id);
+                objects.add(object);
+            } else if (serializer != null) {
+                DrawingObject object = serializer.read(in, color, strokeWidth);
+                object.setId(id);
+                objects.add(object);
+            }
+            in.position(bodyEnd);
+        }
+        return objects;
+    }
+
+    // Заголовок до записей объектов; буфер остается на первой записи
+    static Header readHeader(ByteBuffer in) throws IOException {
+        if (in.remaining() < 4 || in.getInt() != MAGIC) {
+            throw new IOException("Это не файл проекта");
+        }
+        int version = ProjectInput.getVarInt(in);
+        if (version > VERSION) {
+            throw new IOException("Файл проекта более новой версии: " + version);
+        }
+        Header header = new Header();
+        header.baseImageUri = ProjectInput.getString(in);
+        header.baseWidth = ProjectInput.getVarInt(in);
+        header.baseHeight = ProjectInput.getVarInt(in);
+        header.imageWidth = ProjectInput.getVarInt(in);
+        header.imageHeight = ProjectInput.getVarInt(in);
+        header.imageTransform = new float[9];
+        for (int i = 0; i < 9; i++) {
+            header.imageTransform[i] = in.getFloat();
+        }
+        header.objectCount = ProjectInput.getVarInt(in);
+        return header;
+    }
+
+    // Запись через FileChannel во временный файл с fsync и последующей заменой:
+    // при сбое во время сохранения прежний файл проекта остается целым
+    public static void write(File file, ByteBuffer data) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream stream = new FileOutputStream(temp)) {
+            FileChannel channel = stream.getChannel();
+            ByteBuffer source = data.duplicate();
+            while (source.hasRemaining()) {
+                channel.write(source);
+            }
+            channel.force(true);
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Не удалось заменить файл проекта " + file);
+        }
+    }
+
+    public void save(File file) throws IOException {
+        write(file, encode());
+    }
+
+    public static ProjectFile load(File file) throws IOException {
+        try (FileInputStream stream = new FileInputStream(file)) {
+            FileChannel channel = stream.getChannel();
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Файл проекта слишком большой: " + size);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new IOException("Неожиданный конец файла проекта");
+                }
+            }
+            buffer.flip();
+            return decode(buffer);
+        }
+    }
+
+    // Открытие без разбора точек: файл отображается в память, штрихи читают точки прямо из него
+    // при отрисовке и переносят их в кучу только при изменении или проверке попадания. Время открытия
+    // и занятая куча зависят от числа объектов, а не от числа точек. Отображение остается валидным
+    // и после замены файла новым сохранением (rename не трогает уже открытые данные)
+    public static ProjectFile map(File file) throws IOException {
+        try (FileInputStream stream = new FileInputStream(file)) {
+            FileChannel channel = stream.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return decode(buffer, true);
+        }
+    }
+
+    static class Header {
+        String baseImageUri;
+        int baseWidth;
+        int baseHeight;
+        int imageWidth;
+        int imageHeight;
+        float[] imageTransform;
+        int objectCount;
+    }
+}
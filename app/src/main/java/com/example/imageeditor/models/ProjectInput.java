@@ -0,0 +1,61 @@
+package com.example.imageeditor.models;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// Чтение значений, записанных ProjectOutput, из любого ByteBuffer (в куче или отображенного в память)
+public final class ProjectInput {
+
+    private ProjectInput() {
+    }
+
+    public static int getVarInt(ByteBuffer in) throws IOException {
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = get(in);
+            result |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return result;
+        }
+        throw new IOException("Поврежденное число varint");
+    }
+
+    public static long getVarLong(ByteBuffer in) throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = get(in);
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return result;
+        }
+        throw new IOException("Поврежденное число varint");
+    }
+
+    public static int getSignedVarInt(ByteBuffer in) throws IOException {
+        int value = getVarInt(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public static long getSignedVarLong(ByteBuffer in) throws IOException {
+        long value = getVarLong(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public static String getString(ByteBuffer in) throws IOException {
+        int length = getVarInt(in);
+        if (length < 0 || length > in.remaining()) {
+            throw new IOException("Строка выходит за пределы файла: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte get(ByteBuffer in) throws IOException {
+        try {
+            return in.get();
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Неожиданный конец файла проекта", e);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.imageeditor.models;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// Растущий буфер записи файла проекта. Целые числа пишутся как varint (7 бит на байт),
+// числа со знаком - через zigzag, чтобы небольшие отрицательные значения тоже занимали 1-2 байта
+public final class ProjectOutput {
+    private ByteBuffer buffer;
+
+    public ProjectOutput(int initialCapacity) {
+        buffer = ByteBuffer.allocate(Math.max(initialCapacity, 64));
+    }
+
+    public void putByte(int value) {
+        ensureCapacity(1);
+        buffer.put((byte) value);
+    }
+
+    public void putInt(int value) {
+        ensureCapacity(4);
+        buffer.putInt(value);
+    }
+
+    public void putFloat(float value) {
+        ensureCapacity(4);
+        buffer.putFloat(value);
+    }
+
+    public void putVarInt(int value) {
+        ensureCapacity(5);
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    public void putVarLong(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    public void putSignedVarInt(int value) {
+        putVarInt((value << 1) ^ (value >> 31));
+    }
+
+    public void putSignedVarLong(long value) {
+        putVarLong((value << 1) ^ (value >> 63));
+    }
+
+    public void putString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        putVarInt(bytes.length);
+        ensureCapacity(bytes.length);
+        buffer.put(bytes);
+    }
+
+    // Копирует оставшиеся байты source как есть, например уже закодированные точки штриха
+    public void putBytes(ByteBuffer source) {
+        ensureCapacity(source.remaining());
+        buffer.put(source);
+    }
+
+    public int position() {
+        return buffer.position();
+    }
+
+    // Дописывает значение на уже пройденную позицию, например длину записи после ее тела
+    public void putIntAt(int position, int value) {
+        buffer.putInt(position, value);
+    }
+
+    // Записанные данные от начала до текущей позиции
+    public ByteBuffer toByteBuffer() {
+        ByteBuffer result = buffer.duplicate();
+        result.flip();
+        return result;
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (buffer.remaining() >= bytes) return;
+        int capacity = Math.max(buffer.capacity() * 2, buffer.position() + bytes);
+        ByteBuffer larger = ByteBuffer.allocate(capacity);
+        buffer.flip();
+        larger.put(buffer);
+        buffer = larger;
+    }
+}
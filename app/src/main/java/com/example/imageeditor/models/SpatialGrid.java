@@ -0,0 +1,205 @@
+package com.example.imageeditor.models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+// Равномерная сетка по границам объектов сцены. Каждый объект записывается во все ячейки,
+// которые пересекают его границы, поэтому запрос точки или области просматривает только
+// объекты из соответствующих ячеек, а не всю сцену. Сама сетка не знает о типе объектов
+// и не зависит от android.graphics
+class SpatialGrid<T> {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final float cellSize;
+    // Занятые ячейки в таблице с открытой адресацией и линейным пробированием. Ключ ячейки -
+    // примитивный long, поэтому поиск не упаковывает его в Long; пустой слот - null в cellLists
+    private long[] cellKeys = new long[INITIAL_CAPACITY];
+    private Object[] cellLists = new Object[INITIAL_CAPACITY];
+    private int cellCount;
+    private final IdentityHashMap<T, Entry<T>> entries = new IdentityHashMap<>();
+    // Метка текущего запроса, чтобы объект из нескольких ячеек попал в результат один раз
+    private int queryStamp;
+
+    SpatialGrid(float cellSize) {
+        this.cellSize = cellSize;
+    }
+
+    void insert(T object, float left, float top, float right, float bottom) {
+        remove(object);
+
+        Entry<T> entry = new Entry<>(object);
+        entry.minCol = cellIndex(left);
+        entry.minRow = cellIndex(top);
+        entry.maxCol = cellIndex(right);
+        entry.maxRow = cellIndex(bottom);
+        entries.put(object, entry);
+
+        for (int row = entry.minRow; row <= entry.maxRow; row++) {
+            for (int col = entry.minCol; col <= entry.maxCol; col++) {
+                long key = cellKey(col, row);
+                int slot = findSlot(key);
+                ArrayList<Entry<T>> cell = cellAt(slot);
+                if (cell == null) {
+                    cell = new ArrayList<>(4);
+                    addCell(slot, key, cell);
+                }
+                cell.add(entry);
+            }
+        }
+    }
+
+    void remove(T object) {
+        Entry<T> entry = entries.remove(object);
+        if (entry == null) return;
+
+        for (int row = entry.minRow; row <= entry.maxRow; row++) {
+            for (int col = entry.minCol; col <= entry.maxCol; col++) {
+                int slot = findSlot(cellKey(col, row));
+                ArrayList<Entry<T>> cell = cellAt(slot);
+                if (cell == null) continue;
+                // В ячейке обычно немного объектов; удаляем обменом с последним элементом
+                for (int i = cell.size() - 1; i >= 0; i--) {
+                    if (cell.get(i) == entry) {
+                        int last = cell.size() - 1;
+                        cell.set(i, cell.get(last));
+                        cell.remove(last);
+                        break;
+                    }
+                }
+                if (cell.isEmpty()) {
+                    removeSlot(slot);
+                }
+            }
+        }
+    }
+
+    void clear() {
+        Arrays.fill(cellLists, null);
+        cellCount = 0;
+        entries.clear();
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    // Объекты, чьи границы в сетке могут пересекать область; порядок не определен
+    void query(float left, float top, float right, float bottom, List<T> out) {
+        queryStamp++;
+        int minCol = cellIndex(left);
+        int minRow = cellIndex(top);
+        int maxCol = cellIndex(right);
+        int maxRow = cellIndex(bottom);
+
+        // Область больше занятой части сетки: дешевле перебрать объекты напрямую
+        if ((long) (maxCol - minCol + 1) * (maxRow - minRow + 1) > cellCount) {
+            for (Entry<T> entry : entries.values()) {
+                if (entry.maxCol >= minCol && entry.minCol <= maxCol
+                        && entry.maxRow >= minRow && entry.minRow <= maxRow) {
+                    out.add(entry.object);
+                }
+            }
+            return;
+        }
+
+        for (int row = minRow; row <= maxRow; row++) {
+            for (int col = minCol; col <= maxCol; col++) {
+                ArrayList<Entry<T>> cell = cellAt(findSlot(cellKey(col, row)));
+                if (cell == null) continue;
+                for (int i = 0, size = cell.size(); i < size; i++) {
+                    Entry<T> entry = cell.get(i);
+                    if (entry.stamp != queryStamp) {
+                        entry.stamp = queryStamp;
+                        out.add(entry.object);
+                    }
+                }
+            }
+        }
+    }
+
+    private int cellIndex(float coordinate) {
+        return (int) Math.floor(coordinate / cellSize);
+    }
+
+    private static long cellKey(int col, int row) {
+        return ((long) col << 32) | (row & 0xFFFFFFFFL);
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    // Слот с ключом key либо пустой слот, куда его можно записать
+    private int findSlot(long key) {
+        int mask = cellKeys.length - 1;
+        int slot = hash(key) & mask;
+        while (cellLists[slot] != null && cellKeys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    @SuppressWarnings("unchecked")
+    private ArrayList<Entry<T>> cellAt(int slot) {
+        return (ArrayList<Entry<T>>) cellLists[slot];
+    }
+
+    // Записывает ячейку в пустой слот, при заполнении на 3/4 расширяя таблицу
+    private void addCell(int slot, long key, ArrayList<Entry<T>> cell) {
+        if ((cellCount + 1) * 4 > cellKeys.length * 3) {
+            long[] oldKeys = cellKeys;
+            Object[] oldLists = cellLists;
+            cellKeys = new long[oldKeys.length * 2];
+            cellLists = new Object[oldLists.length * 2];
+            for (int i = 0; i < oldLists.length; i++) {
+                if (oldLists[i] != null) {
+                    int target = findSlot(oldKeys[i]);
+                    cellKeys[target] = oldKeys[i];
+                    cellLists[target] = oldLists[i];
+                }
+            }
+            slot = findSlot(key);
+        }
+        cellKeys[slot] = key;
+        cellLists[slot] = cell;
+        cellCount++;
+    }
+
+    // Удаление со сдвигом назад: следующие записи цепочки переезжают в освободившийся слот,
+    // чтобы поиск не останавливался на дыре
+    private void removeSlot(int slot) {
+        int mask = cellKeys.length - 1;
+        cellLists[slot] = null;
+        cellCount--;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            if (cellLists[next] == null) return;
+            int home = hash(cellKeys[next]) & mask;
+            // Запись можно сдвинуть, если ее исходный слот не лежит между дырой и ней самой
+            boolean between = slot <= next ? slot < home && home <= next : slot < home || home <= next;
+            if (!between) {
+                cellKeys[slot] = cellKeys[next];
+                cellLists[slot] = cellLists[next];
+                cellLists[next] = null;
+                slot = next;
+            }
+        }
+    }
+
+    private static class Entry<T> {
+        final T object;
+        int minCol;
+        int minRow;
+        int maxCol;
+        int maxRow;
+        int stamp;
+
+        Entry(T object) {
+            this.object = object;
+        }
+    }
+}
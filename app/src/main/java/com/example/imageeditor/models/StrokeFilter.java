@@ -0,0 +1,149 @@
+package com.example.imageeditor.models;
+
+import java.util.Arrays;
+
+// Потоковый фильтр сэмплов касания перед DrawingLine. Отбрасывает сэмплы ближе minDistance
+// к последней принятой точке и короткие шаги, почти продолжающие прежнее направление.
+// Окончательное прореживание алгоритмом Рамера-Дугласа-Пекера выполняется при завершении штриха
+public class StrokeFilter {
+    // Шаг, отклоняющийся от прежнего направления меньше чем на ~10 градусов, считается прямым
+    private static final float COLLINEAR_COS = 0.985f;
+    // Прямые шаги принимаются, только когда накопится несколько minDistance
+    private static final float COLLINEAR_STEP_FACTOR = 4f;
+
+    private float minDistance;
+    private float lastX;
+    private float lastY;
+    // Направление последнего принятого шага (единичный вектор) или 0, если шагов еще не было
+    private float directionX;
+    private float directionY;
+    // Последний отброшенный сэмпл, чтобы штрих заканчивался точно под пальцем
+    private float pendingX;
+    private float pendingY;
+    private boolean hasPending;
+
+    // Начало штриха в точке (x, y); minDistance - в координатах точек штриха
+    public void reset(float x, float y, float minDistance) {
+        this.minDistance = minDistance;
+        lastX = x;
+        lastY = y;
+        directionX = 0;
+        directionY = 0;
+        hasPending = false;
+    }
+
+    // Фильтрует count точек xy (x,y парами) на месте и возвращает количество принятых
+    public int filter(float[] xy, int count) {
+        float minDistanceSquared = minDistance * minDistance;
+        float collinearStep = minDistance * COLLINEAR_STEP_FACTOR;
+        int accepted = 0;
+        for (int i = 0; i < count; i++) {
+            float x = xy[i * 2];
+            float y = xy[i * 2 + 1];
+            float dx = x - lastX;
+            float dy = y - lastY;
+            float distanceSquared = dx * dx + dy * dy;
+            if (distanceSquared < minDistanceSquared || distanceSquared == 0) {
+                setPending(x, y);
+                continue;
+            }
+            float distance = (float) Math.sqrt(distanceSquared);
+            if (distance < collinearStep && (dx * directionX + dy * directionY) > COLLINEAR_COS * distance) {
+                setPending(x, y);
+                continue;
+            }
+
+            xy[accepted * 2] = x;
+            xy[accepted * 2 + 1] = y;
+            accepted++;
+            directionX = dx / distance;
+            directionY = dy / distance;
+            lastX = x;
+            lastY = y;
+            hasPending = false;
+        }
+        return accepted;
+    }
+
+    // Записывает в out последний отброшенный сэмпл; false, если штрих уже заканчивается им
+    public boolean finish(float[] out) {
+        if (!hasPending) return false;
+        out[0] = pendingX;
+        out[1] = pendingY;
+        hasPending = false;
+        return true;
+    }
+
+    private void setPending(float x, float y) {
+        pendingX = x;
+        pendingY = y;
+        hasPending = true;
+    }
+
+    // Рамер-Дуглас-Пекер без рекурсии: оставляет точки, отклоняющиеся от упрощенной ломаной
+    // больше чем на tolerance. Сжимает массив на месте и возвращает новое количество точек
+    public static int simplify(float[] points, int count, float tolerance) {
+        if (count < 3) return count;
+
+        boolean[] keep = new boolean[count];
+        keep[0] = true;
+        keep[count - 1] = true;
+        // Стек диапазонов [first, last], которые еще нужно проверить
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = count - 1;
+        float toleranceSquared = tolerance * tolerance;
+
+        while (top > 0) {
+            int last = stack[--top];
+            int first = stack[--top];
+
+            float ax = points[first * 2];
+            float ay = points[first * 2 + 1];
+            float abx = points[last * 2] - ax;
+            float aby = points[last * 2 + 1] - ay;
+            float lengthSquared = abx * abx + aby * aby;
+
+            float maxDistanceSquared = -1;
+            int farthest = -1;
+            for (int i = first + 1; i < last; i++) {
+                float apx = points[i * 2] - ax;
+                float apy = points[i * 2 + 1] - ay;
+                float distanceSquared;
+                if (lengthSquared == 0) {
+                    distanceSquared = apx * apx + apy * apy;
+                } else {
+                    // Квадрат расстояния до прямой через векторное произведение
+                    float cross = apx * aby - apy * abx;
+                    distanceSquared = cross * cross / lengthSquared;
+                }
+                if (distanceSquared > maxDistanceSquared) {
+                    maxDistanceSquared = distanceSquared;
+                    farthest = i;
+                }
+            }
+
+            if (farthest >= 0 && maxDistanceSquared > toleranceSquared) {
+                keep[farthest] = true;
+                if (top + 4 > stack.length) {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                }
+                stack[top++] = first;
+                stack[top++] = farthest;
+                stack[top++] = farthest;
+                stack[top++] = last;
+            }
+        }
+
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            if (keep[i]) {
+                points[kept * 2] = points[i * 2];
+                points[kept * 2 + 1] = points[i * 2 + 1];
+                kept++;
+            }
+        }
+        return kept;
+    }
+}
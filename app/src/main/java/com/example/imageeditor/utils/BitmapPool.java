@@ -0,0 +1,171 @@
+package com.example.imageeditor.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+// Пул изменяемых битмап, сгруппированных по размеру и конфигурации.
+// Освобожденные битмапы хранятся до исчерпания бюджета в байтах, затем вытесняются самые давние.
+public class BitmapPool {
+    private static final String TAG = "BitmapPool";
+
+    private static BitmapPool instance;
+
+    private final long maxBytes;
+    private final Map<Key, ArrayDeque<Bitmap>> bitmapsByKey = new HashMap<>();
+    // Порядок возврата в пул: первым вытесняется битмапа, дольше всех пролежавшая без дела
+    private final LinkedHashSet<Bitmap> lruOrder = new LinkedHashSet<>();
+    // Ключ для поиска без создания нового объекта на каждый запрос
+    private final Key lookupKey = new Key();
+    private long currentBytes;
+
+    private int hitCount;
+    private int missCount;
+    private int evictionCount;
+
+    public static synchronized BitmapPool getInstance() {
+        if (instance == null) {
+            // Пулу отводится восьмая часть доступной куче памяти
+            instance = new BitmapPool(Runtime.getRuntime().maxMemory() / 8);
+        }
+        return instance;
+    }
+
+    public BitmapPool(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    // Возвращает очищенную битмапу нужного размера: из пула, если есть, иначе новую
+    public Bitmap get(int width, int height, Bitmap.Config config) {
+        Bitmap bitmap = getDirty(width, height, config);
+        if (bitmap != null) {
+            bitmap.eraseColor(Color.TRANSPARENT);
+            return bitmap;
+        }
+        return Bitmap.createBitmap(width, height, config);
+    }
+
+    // Битмапа из пула без очистки (для inBitmap или когда она будет полностью перерисована), либо null
+    public synchronized Bitmap getDirty(int width, int height, Bitmap.Config config) {
+        lookupKey.set(width, height, config);
+        ArrayDeque<Bitmap> bitmaps = bitmapsByKey.get(lookupKey);
+        Bitmap bitmap = bitmaps != null ? bitmaps.pollLast() : null;
+        if (bitmap == null) {
+            missCount++;
+            return null;
+        }
+        lruOrder.remove(bitmap);
+        currentBytes -= bitmap.getAllocationByteCount();
+        hitCount++;
+        return bitmap;
+    }
+
+    // Возвращает битмапу в пул. После вызова вызывающий код не должен ее использовать
+    public synchronized void put(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled() || lruOrder.contains(bitmap)) return;
+
+        int size = bitmap.getAllocationByteCount();
+        if (!bitmap.isMutable() || bitmap.getConfig() == null || size > maxBytes) {
+            bitmap.recycle();
+            return;
+        }
+
+        Key key = new Key();
+        key.set(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig());
+        ArrayDeque<Bitmap> bitmaps = bitmapsByKey.get(key);
+        if (bitmaps == null) {
+            bitmaps = new ArrayDeque<>();
+            bitmapsByKey.put(key, bitmaps);
+        }
+        bitmaps.addLast(bitmap);
+        lruOrder.add(bitmap);
+        currentBytes += size;
+
+        trimToSize(maxBytes);
+    }
+
+    // Освобождает все битмапы пула (например, при нехватке памяти)
+    public synchronized void clear() {
+        trimToSize(0);
+    }
+
+    private void trimToSize(long targetBytes) {
+        Iterator<Bitmap> iterator = lruOrder.iterator();
+        while (currentBytes > targetBytes && iterator.hasNext()) {
+            Bitmap eldest = iterator.next();
+            iterator.remove();
+
+            lookupKey.set(eldest.getWidth(), eldest.getHeight(), eldest.getConfig());
+            ArrayDeque<Bitmap> bitmaps = bitmapsByKey.get(lookupKey);
+            if (bitmaps != null) {
+                bitmaps.remove(eldest);
+                if (bitmaps.isEmpty()) {
+                    bitmapsByKey.remove(lookupKey);
+                }
+            }
+
+            currentBytes -= eldest.getAllocationByteCount();
+            eldest.recycle();
+            evictionCount++;
+        }
+    }
+
+    public synchronized int getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized int getMissCount() {
+        return missCount;
+    }
+
+    public synchronized int getEvictionCount() {
+        return evictionCount;
+    }
+
+    public synchronized long getCurrentBytes() {
+        return currentBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized void logStats() {
+        Log.d(TAG, "hits=" + hitCount + " misses=" + missCount + " evictions=" + evictionCount
+                + " bytes=" + currentBytes + "/" + maxBytes);
+    }
+
+    private static class Key {
+        private int width;
+        private int height;
+        private Bitmap.Config config;
+
+        void set(int width, int height, Bitmap.Config config) {
+            this.width = width;
+            this.height = height;
+            this.config = config;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return width == other.width && height == other.height && config == other.config;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = width;
+            result = 31 * result + height;
+            result = 31 * result + (config != null ? config.hashCode() : 0);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.imageeditor.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+// Буферизованный поток поверх канала: данные копируются в прямой ByteBuffer
+// и сбрасываются в канал крупными блоками. Считает записанные байты для прогресса.
+public class ChannelOutputStream extends OutputStream {
+
+    public interface ProgressListener {
+        void onBytesWritten(long totalBytes);
+    }
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+    private final ProgressListener progressListener;
+    private long totalBytes;
+
+    public ChannelOutputStream(WritableByteChannel channel, int bufferSize, ProgressListener progressListener) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        this.progressListener = progressListener;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (!buffer.hasRemaining()) {
+            drain();
+        }
+        buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (!buffer.hasRemaining()) {
+                drain();
+            }
+            int chunk = Math.min(length, buffer.remaining());
+            buffer.put(data, offset, chunk);
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        drain();
+    }
+
+    @Override
+    public void close() throws IOException {
+        drain();
+        channel.close();
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            totalBytes += channel.write(buffer);
+        }
+        buffer.clear();
+        if (progressListener != null) {
+            progressListener.onBytesWritten(totalBytes);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.imageeditor.utils;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.provider.MediaStore;
+import android.util.Log;
+
+import com.example.imageeditor.models.DrawingObject;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Сохранение изображения в галерею в фоновом потоке: наложение рисунков, кодирование JPEG
+// и потоковая запись в отложенную (IS_PENDING) запись MediaStore.
+public class ImageExporter {
+    private static final String TAG = "ImageExporter";
+    private static final int JPEG_QUALITY = 95;
+    private static final int WRITE_BUFFER_SIZE = 256 * 1024;
+    // Грубая оценка размера JPEG на пиксель при качестве 95, нужна только для прогресса
+    private static final float ESTIMATED_JPEG_BYTES_PER_PIXEL = 0.4f;
+
+    private static final int PROGRESS_COMPOSED = 20;
+    private static final int PROGRESS_ENCODED = 95;
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor();
+
+    public interface Callback {
+        void onExportProgress(int percent);
+
+        void onExportFinished(Uri imageUri);
+
+        void onExportFailed(Exception error);
+    }
+
+    // Вызывается в UI-потоке. Фон читает живые image и drawingObjects без копирования, поэтому
+    // вызывающий блокирует правки (EditorSession.lockEditing) до вызова callback. В UI-потоке
+    // остается только постановка задачи; копия битмапы, наложение рисунков и JPEG - в фоне
+    public static void export(Context context, Bitmap image, List<DrawingObject> drawingObjects, Callback callback) {
+        ContentResolver resolver = context.getApplicationContext().getContentResolver();
+        Handler mainHandler = new Handler(Looper.getMainLooper());
+        EXECUTOR.execute(() -> {
+            Bitmap composed = null;
+            try {
+                composed = BitmapPool.getInstance().get(image.getWidth(), image.getHeight(), Bitmap.Config.ARGB_8888);
+                Uri imageUri = exportToGallery(resolver, image, drawingObjects, composed, mainHandler, callback);
+                mainHandler.post(() -> callback.onExportFinished(imageUri));
+            } catch (Exception | OutOfMemoryError e) {
+                Log.e(TAG, "Ошибка сохранения изображения", e);
+                Exception error = e instanceof Exception ? (Exception) e : new IOException(e);
+                mainHandler.post(() -> callback.onExportFailed(error));
+            } finally {
+                if (composed != null) {
+                    BitmapPool.getInstance().put(composed);
+                }
+            }
+        });
+    }
+
+    private static Uri exportToGallery(ContentResolver resolver, Bitmap source, List<DrawingObject> objects,
+                                       Bitmap image, Handler mainHandler, Callback callback) throws IOException {
+        ProgressReporter progress = new ProgressReporter(mainHandler, callback);
+
+        // Рабочая битмапа и объекты только читаются; рисунки накладываются на битмапу экспорта
+        Canvas canvas = new Canvas(image);
+        canvas.drawBitmap(source, 0, 0, null);
+        for (DrawingObject obj : objects) {
+            obj.draw(canvas);
+        }
+        progress.report(PROGRESS_COMPOSED);
+
+        ContentValues values = new ContentValues();
+        values.put(MediaStore.Images.Media.DISPLAY_NAME, "edited_image_" + System.currentTimeMillis() + ".jpg");
+        values.put(MediaStore.Images.Media.MIME_TYPE, "image/jpeg");
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            // Запись не видна другим приложениям, пока файл не дописан
+            values.put(MediaStore.Images.Media.IS_PENDING, 1);
+        }
+
+        Uri imageUri = resolver.insert(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, values);
+        if (imageUri == null) {
+            throw new IOException("Не удалось создать запись MediaStore");
+        }
+
+        try {
+            long estimatedBytes = Math.max(1L,
+                    (long) (image.getWidth() * (long) image.getHeight() * ESTIMATED_JPEG_BYTES_PER_PIXEL));
+            try (ParcelFileDescriptor descriptor = resolver.openFileDescriptor(imageUri, "w")) {
+                if (descriptor == null) {
+                    throw new IOException("Не удалось открыть файл для записи: " + imageUri);
+                }
+                FileOutputStream fileStream = new FileOutputStream(descriptor.getFileDescriptor());
+                try (ChannelOutputStream output = new ChannelOutputStream(fileStream.getChannel(), WRITE_BUFFER_SIZE,
+                        totalBytes -> progress.report(PROGRESS_COMPOSED + (int) Math.min(
+                                PROGRESS_ENCODED - PROGRESS_COMPOSED,
+                                totalBytes * (PROGRESS_ENCODED - PROGRESS_COMPOSED) / estimatedBytes)))) {
+                    if (!image.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, output)) {
+                        throw new IOException("Ошибка кодирования JPEG");
+                    }
+                }
+            }
+
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                // Публикуем запись только после полной записи файла
+                values.clear();
+                values.put(MediaStore.Images.Media.IS_PENDING, 0);
+                resolver.update(imageUri, values, null, null);
+            }
+            progress.report(100);
+            return imageUri;
+        } catch (IOException | RuntimeException e) {
+            resolver.delete(imageUri, null, null);
+            throw e;
+        }
+    }
+
+    // Передает прогресс в UI-поток только при изменении процента
+    private static class ProgressReporter {
+        private final Handler mainHandler;
+        private final Callback callback;
+        private int lastPercent = -1;
+
+        ProgressReporter(Handler mainHandler, Callback callback) {
+            this.mainHandler = mainHandler;
+            this.callback = callback;
+        }
+
+        void report(int percent) {
+            if (percent == lastPercent) return;
+            lastPercent = percent;
+            mainHandler.post(() -> callback.onExportProgress(percent));
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.imageeditor.utils;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// Асинхронная загрузка изображения. Поток из ContentResolver читается один раз в буфер,
+// из которого декодируются размеры, превью, рабочая битмапа и источник тайлов.
+public class ImageLoader {
+    private static final String TAG = "ImageLoader";
+    private static final int PREVIEW_SIZE = 512;
+    private static final int READ_CHUNK = 64 * 1024;
+
+    // Ограниченный пул: не больше двух загрузок одновременно и короткая очередь
+    private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(
+            2, 2, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(4));
+
+    static {
+        EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    public interface Callback {
+        // Быстрое превью низкого разрешения; width и height - размеры будущей рабочей битмапы
+        void onPreviewLoaded(Bitmap preview, int width, int height);
+
+        // tiledSource равен null, если рабочая битмапа уже в полном разрешении
+        void onImageLoaded(Bitmap bitmap, TiledImageSource tiledSource);
+
+        void onLoadFailed(Exception error);
+    }
+
+    public static class LoadHandle {
+        private volatile boolean cancelled;
+        private Future<?> future;
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        public void cancel() {
+            cancelled = true;
+            if (future != null) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    public static LoadHandle load(Context context, Uri uri, Callback callback) {
+        Context appContext = context.getApplicationContext();
+        Handler mainHandler = new Handler(Looper.getMainLooper());
+        LoadHandle handle = new LoadHandle();
+
+        try {
+            handle.future = EXECUTOR.submit(() -> {
+                try {
+                    decode(appContext, uri, callback, mainHandler, handle);
+                } catch (Exception | OutOfMemoryError e) {
+                    if (handle.isCancelled()) return;
+                    Log.e(TAG, "Ошибка загрузки изображения: " + uri, e);
+                    Exception error = e instanceof Exception ? (Exception) e : new IOException(e);
+                    mainHandler.post(() -> {
+                        if (!handle.isCancelled()) {
+                            callback.onLoadFailed(error);
+                        }
+                    });
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            mainHandler.post(() -> callback.onLoadFailed(e));
+        }
+        return handle;
+    }
+
+    private static void decode(Context context, Uri uri, Callback callback,
+                               Handler mainHandler, LoadHandle handle) throws IOException {
+        byte[] data;
+        int length;
+        try (InputStream input = context.getContentResolver().openInputStream(uri)) {
+            if (input == null) throw new FileNotFoundException(uri.toString());
+            data = new byte[Math.max(READ_CHUNK, input.available())];
+            length = 0;
+            int read;
+            while ((read = input.read(data, length, data.length - length)) != -1) {
+                length += read;
+                if (length == data.length) {
+                    data = Arrays.copyOf(data, data.length * 2);
+                }
+                if (handle.isCancelled()) return;
+            }
+        }
+
+        // Размеры изображения без декодирования пикселей
+        BitmapFactory.Options boundsOptions = new BitmapFactory.Options();
+        boundsOptions.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(data, 0, length, boundsOptions);
+        if (boundsOptions.outWidth <= 0 || boundsOptions.outHeight <= 0) {
+            throw new IOException("Не удалось определить размеры изображения");
+        }
+
+        int sampleSize = BitmapUtils.calculateInSampleSize(boundsOptions.outWidth, boundsOptions.outHeight,
+                BitmapUtils.MAX_WORKING_SIZE, BitmapUtils.MAX_WORKING_SIZE);
+        int workingWidth = boundsOptions.outWidth / sampleSize;
+        int workingHeight = boundsOptions.outHeight / sampleSize;
+
+        // Превью имеет смысл, только если оно заметно меньше рабочей битмапы
+        int previewSampleSize = BitmapUtils.calculateInSampleSize(boundsOptions.outWidth, boundsOptions.outHeight,
+                PREVIEW_SIZE, PREVIEW_SIZE);
+        if (previewSampleSize >= sampleSize * 4 && !handle.isCancelled()) {
+            BitmapFactory.Options previewOptions = new BitmapFactory.Options();
+            previewOptions.inSampleSize = previewSampleSize;
+            Bitmap preview = BitmapFactory.decodeByteArray(data, 0, length, previewOptions);
+            if (preview != null) {
+                mainHandler.post(() -> {
+                    if (!handle.isCancelled()) {
+                        callback.onPreviewLoaded(preview, workingWidth, workingHeight);
+                    }
+                });
+            }
+        }
+
+        if (handle.isCancelled()) return;
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize;
+        options.inMutable = true;
+        // Декодируем поверх подходящей битмапы из пула, если она там есть
+        options.inBitmap = BitmapPool.getInstance().getDirty(workingWidth, workingHeight, Bitmap.Config.ARGB_8888);
+        Bitmap decoded;
+        try {
+            decoded = BitmapFactory.decodeByteArray(data, 0, length, options);
+        } catch (IllegalArgumentException e) {
+            // Размер декодированного изображения не совпал с битмапой из пула
+            BitmapPool.getInstance().put(options.inBitmap);
+            options.inBitmap = null;
+            decoded = BitmapFactory.decodeByteArray(data, 0, length, options);
+        }
+        Bitmap bitmap = decoded;
+        if (bitmap == null) {
+            throw new IOException("Не удалось декодировать изображение");
+        }
+
+        TiledImageSource tiledSource = null;
+        if (sampleSize > 1 && !handle.isCancelled()) {
+            tiledSource = TiledImageSource.open(data, length);
+        }
+
+        TiledImageSource loadedSource = tiledSource;
+        mainHandler.post(() -> {
+            if (handle.isCancelled()) {
+                // Загрузка отменена уже после декодирования: битмапа пригодится следующей загрузке
+                BitmapPool.getInstance().put(bitmap);
+                if (loadedSource != null) loadedSource.release();
+                return;
+            }
+            callback.onImageLoaded(bitmap, loadedSource);
+        });
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.imageeditor.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Пирамида уменьшенных копий битмапы (1/2, 1/4 и т.д.) для отрисовки при малом масштабе.
+// Уровни строятся в фоновом потоке, каждый из предыдущего; пока нужный уровень не готов,
+// рисуется ближайший более крупный. Исходная битмапа не должна меняться или заменяться, пока пирамида
+// не освобождена
+public class MipmapPyramid {
+    private static final String TAG = "MipmapPyramid";
+    // Уровни, у которых меньшая сторона короче этого размера, не строятся
+    private static final int MIN_LEVEL_SIZE = 32;
+    // Высота полосы уровня, которая строится за один захват блокировки
+    private static final int STRIP_HEIGHT = 64;
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor();
+
+    private final Bitmap source;
+    // levels[0] - исходная битмапа, остальные появляются на UI-потоке по мере готовности
+    private final Bitmap[] levels;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Paint drawPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Paint buildPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Matrix levelMatrix = new Matrix();
+
+    // Фоновый поток читает битмапы только под этой блокировкой и проверяет released
+    private final Object lock = new Object();
+    private boolean released;
+    private boolean buildStarted;
+    private Runnable onLevelReadyListener;
+
+    public MipmapPyramid(Bitmap source) {
+        this.source = source;
+        this.levels = new Bitmap[levelCount(source.getWidth(), source.getHeight())];
+        this.levels[0] = source;
+    }
+
+    // Количество уровней вместе с исходным
+    public static int levelCount(int width, int height) {
+        int count = 1;
+        while (count < 30 && Math.min(width >> count, height >> count) >= MIN_LEVEL_SIZE) {
+            count++;
+        }
+        return count;
+    }
+
+    // Самый мелкий уровень, пиксели которого еще не мельче экранных: 0.5 и меньше - уровень 1 и т.д.
+    public static int levelForScale(float scale) {
+        int level = 0;
+        while (level < 30 && scale * (1 << (level + 1)) <= 1f) {
+            level++;
+        }
+        return level;
+    }
+
+    public void setOnLevelReadyListener(Runnable listener) {
+        this.onLevelReadyListener = listener;
+    }
+
+    // Рисует исходную битмапу с матрицей imageMatrix, масштаб scale выбирает уровень пирамиды
+    public void draw(Canvas canvas, Matrix imageMatrix, float scale) {
+        int wanted = Math.min(levelForScale(scale), levels.length - 1);
+        if (wanted > 0) {
+            startBuild();
+        }
+        int level = wanted;
+        while (level > 0 && levels[level] == null) {
+            level--;
+        }
+
+        if (level == 0) {
+            // При уменьшении фильтрация убирает алиасинг, при увеличении пиксели остаются четкими
+            canvas.drawBitmap(source, imageMatrix, scale < 1f ? drawPaint : null);
+            return;
+        }
+        Bitmap bitmap = levels[level];
+        levelMatrix.set(imageMatrix);
+        levelMatrix.preScale((float) source.getWidth() / bitmap.getWidth(),
+                (float) source.getHeight() / bitmap.getHeight());
+        canvas.drawBitmap(bitmap, levelMatrix, drawPaint);
+    }
+
+    private void startBuild() {
+        if (buildStarted || released) return;
+        buildStarted = true;
+        EXECUTOR.execute(this::buildLevels);
+    }
+
+    private void buildLevels() {
+        Bitmap previous = source;
+        for (int level = 1; level < levels.length; level++) {
+            Bitmap next = buildLevel(previous);
+            if (next == null) return;
+            int index = level;
+            mainHandler.post(() -> publish(index, next));
+            previous = next;
+        }
+    }
+
+    // Уменьшает битмапу вдвое полосами; null, если пирамида освобождена или не хватило памяти
+    private Bitmap buildLevel(Bitmap previous) {
+        int width = previous.getWidth() / 2;
+        int height = previous.getHeight() / 2;
+        Bitmap level;
+        try {
+            level = BitmapPool.getInstance().get(width, height, Bitmap.Config.ARGB_8888);
+        } catch (OutOfMemoryError e) {
+            Log.w(TAG, "Не хватает памяти для уровня " + width + "x" + height, e);
+            return null;
+        }
+        level.setHasAlpha(previous.hasAlpha());
+
+        Canvas canvas = new Canvas(level);
+        Rect src = new Rect();
+        Rect dst = new Rect();
+        for (int top = 0; top < height; top += STRIP_HEIGHT) {
+            int bottom = Math.min(height, top + STRIP_HEIGHT);
+            // Билинейная выборка точно посередине между пикселями усредняет блок 2x2
+            src.set(0, top * 2, width * 2, bottom * 2);
+            dst.set(0, top, width, bottom);
+            synchronized (lock) {
+                if (released) {
+                    BitmapPool.getInstance().put(level);
+                    return null;
+                }
+                canvas.drawBitmap(previous, src, dst, buildPaint);
+            }
+        }
+        return level;
+    }
+
+    private void publish(int index, Bitmap level) {
+        if (released) {
+            BitmapPool.getInstance().put(level);
+            return;
+        }
+        levels[index] = level;
+        if (onLevelReadyListener != null) {
+            onLevelReadyListener.run();
+        }
+    }
+
+    // Возвращает уровни в пул. После выхода фоновый поток больше не обращается к битмапам,
+    // поэтому исходную битмапу можно сразу переиспользовать
+    public void release() {
+        synchronized (lock) {
+            released = true;
+        }
+        for (int i = 1; i < levels.length; i++) {
+            if (levels[i] != null) {
+                BitmapPool.getInstance().put(levels[i]);
+                levels[i] = null;
+            }
+        }
+    }
+}
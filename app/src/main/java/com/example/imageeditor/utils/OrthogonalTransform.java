@@ -0,0 +1,231 @@
+package com.example.imageeditor.utils;
+
+import android.graphics.Bitmap;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Повороты на 90/180/270 градусов и отражение как перестановка пикселей без ресемплинга.
+// Изображение обрабатывается полосами строк параллельно через fork-join; отражение и поворот
+// на 180 градусов выполняются на месте, поворот на 90 и 270 - в одну битмапу из BitmapPool.
+public final class OrthogonalTransform {
+    // Блок 64x64 int (16 КБ) помещается в кэш L1 при транспонировании
+    private static final int BLOCK_SIZE = 64;
+    // Высота полосы строк, читаемой из битмапы за один вызов getPixels
+    private static final int BAND_HEIGHT = 64;
+
+    private OrthogonalTransform() {
+    }
+
+    // Возвращает повернутую по часовой стрелке битмапу. Для 0 и 180 градусов это исходная битмапа,
+    // для 90 и 270 - новая битмапа из пула, а исходная остается нетронутой
+    public static Bitmap rotate(Bitmap bitmap, int degrees) {
+        int normalized = ((degrees % 360) + 360) % 360;
+        if (normalized % 90 != 0) {
+            throw new IllegalArgumentException("Поворот должен быть кратен 90 градусам: " + degrees);
+        }
+        switch (normalized) {
+            case 90:
+            case 270:
+                return rotateQuarter(bitmap, normalized == 90);
+            case 180:
+                rotate180InPlace(bitmap);
+                return bitmap;
+            default:
+                return bitmap;
+        }
+    }
+
+    // Отражение по горизонтали на месте
+    public static void flipHorizontal(Bitmap bitmap) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        int bands = (height + BAND_HEIGHT - 1) / BAND_HEIGHT;
+
+        boolean premultiplied = BitmapUtils.beginRawPixelAccess(bitmap);
+        try {
+            runBands(bands, () -> new int[width * BAND_HEIGHT], (band, buffer) -> {
+                int y = band * BAND_HEIGHT;
+                int rows = Math.min(BAND_HEIGHT, height - y);
+                bitmap.getPixels(buffer, 0, width, 0, y, width, rows);
+                reverseRows(buffer, width, rows);
+                bitmap.setPixels(buffer, 0, width, 0, y, width, rows);
+            });
+        } finally {
+            BitmapUtils.endRawPixelAccess(bitmap, premultiplied);
+        }
+    }
+
+    private static void rotate180InPlace(Bitmap bitmap) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        int half = height / 2;
+        // Полосы из верхней половины меняются местами с зеркальными полосами из нижней
+        int pairBands = (half + BAND_HEIGHT - 1) / BAND_HEIGHT;
+        boolean hasMiddleRow = (height & 1) != 0;
+        int bands = pairBands + (hasMiddleRow ? 1 : 0);
+
+        boolean premultiplied = BitmapUtils.beginRawPixelAccess(bitmap);
+        try {
+            runBands(bands, () -> new int[width * BAND_HEIGHT * 2], (band, buffer) -> {
+                if (band == pairBands) {
+                    // Средняя строка при нечетной высоте просто разворачивается
+                    bitmap.getPixels(buffer, 0, width, 0, half, width, 1);
+                    reverse(buffer, 0, width);
+                    bitmap.setPixels(buffer, 0, width, 0, half, width, 1);
+                    return;
+                }
+                int top = band * BAND_HEIGHT;
+                int rows = Math.min(BAND_HEIGHT, half - top);
+                int bottom = height - top - rows;
+                int bottomOffset = width * rows;
+
+                bitmap.getPixels(buffer, 0, width, 0, top, width, rows);
+                bitmap.getPixels(buffer, bottomOffset, width, 0, bottom, width, rows);
+                // Разворот всей полосы целиком дает ее поворот на 180 градусов
+                reverse(buffer, 0, bottomOffset);
+                reverse(buffer, bottomOffset, bottomOffset * 2);
+                bitmap.setPixels(buffer, 0, width, 0, bottom, width, rows);
+                bitmap.setPixels(buffer, bottomOffset, width, 0, top, width, rows);
+            });
+        } finally {
+            BitmapUtils.endRawPixelAccess(bitmap, premultiplied);
+        }
+    }
+
+    private static Bitmap rotateQuarter(Bitmap source, boolean clockwise) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+
+        // Результат полностью перезаписывается, поэтому очищать битмапу из пула не нужно
+        Bitmap result = BitmapPool.getInstance().getDirty(height, width, Bitmap.Config.ARGB_8888);
+        if (result == null) {
+            result = Bitmap.createBitmap(height, width, Bitmap.Config.ARGB_8888);
+        }
+        result.setHasAlpha(source.hasAlpha());
+
+        Bitmap target = result;
+        int bands = (height + BAND_HEIGHT - 1) / BAND_HEIGHT;
+        boolean sourcePremultiplied = BitmapUtils.beginRawPixelAccess(source);
+        boolean targetPremultiplied = BitmapUtils.beginRawPixelAccess(target);
+        try {
+            runBands(bands, () -> new int[width * BAND_HEIGHT * 2], (band, buffer) -> {
+                int y = band * BAND_HEIGHT;
+                int rows = Math.min(BAND_HEIGHT, height - y);
+                int rotatedOffset = width * BAND_HEIGHT;
+                source.getPixels(buffer, 0, width, 0, y, width, rows);
+                // Полоса из rows строк становится полосой из rows столбцов результата
+                if (clockwise) {
+                    rotate90(buffer, 0, width, rows, buffer, rotatedOffset);
+                    target.setPixels(buffer, rotatedOffset, rows, height - y - rows, 0, rows, width);
+                } else {
+                    rotate270(buffer, 0, width, rows, buffer, rotatedOffset);
+                    target.setPixels(buffer, rotatedOffset, rows, y, 0, rows, width);
+                }
+            });
+        } finally {
+            BitmapUtils.endRawPixelAccess(source, sourcePremultiplied);
+            BitmapUtils.endRawPixelAccess(target, targetPremultiplied);
+        }
+        return result;
+    }
+
+    // Поворот по часовой стрелке массива width x height в массив height x width
+    public static void rotate90(int[] src, int srcOffset, int width, int height, int[] dst, int dstOffset) {
+        for (int blockY = 0; blockY < height; blockY += BLOCK_SIZE) {
+            int endY = Math.min(blockY + BLOCK_SIZE, height);
+            for (int blockX = 0; blockX < width; blockX += BLOCK_SIZE) {
+                int endX = Math.min(blockX + BLOCK_SIZE, width);
+                for (int y = blockY; y < endY; y++) {
+                    int srcIndex = srcOffset + y * width + blockX;
+                    int dstIndex = dstOffset + blockX * height + (height - 1 - y);
+                    for (int x = blockX; x < endX; x++) {
+                        dst[dstIndex] = src[srcIndex++];
+                        dstIndex += height;
+                    }
+                }
+            }
+        }
+    }
+
+    // Поворот против часовой стрелки массива width x height в массив height x width
+    public static void rotate270(int[] src, int srcOffset, int width, int height, int[] dst, int dstOffset) {
+        for (int blockY = 0; blockY < height; blockY += BLOCK_SIZE) {
+            int endY = Math.min(blockY + BLOCK_SIZE, height);
+            for (int blockX = 0; blockX < width; blockX += BLOCK_SIZE) {
+                int endX = Math.min(blockX + BLOCK_SIZE, width);
+                for (int y = blockY; y < endY; y++) {
+                    int srcIndex = srcOffset + y * width + blockX;
+                    int dstIndex = dstOffset + (width - 1 - blockX) * height + y;
+                    for (int x = blockX; x < endX; x++) {
+                        dst[dstIndex] = src[srcIndex++];
+                        dstIndex -= height;
+                    }
+                }
+            }
+        }
+    }
+
+    // Разворачивает каждую из rows строк шириной width
+    public static void reverseRows(int[] pixels, int width, int rows) {
+        for (int row = 0; row < rows; row++) {
+            reverse(pixels, row * width, row * width + width);
+        }
+    }
+
+    // Разворачивает элементы массива в диапазоне [from, to)
+    public static void reverse(int[] pixels, int from, int to) {
+        int left = from;
+        int right = to - 1;
+        while (left < right) {
+            int tmp = pixels[left];
+            pixels[left++] = pixels[right];
+            pixels[right--] = tmp;
+        }
+    }
+
+    private interface BufferFactory {
+        int[] create();
+    }
+
+    private interface BandOperation {
+        void run(int band, int[] buffer);
+    }
+
+    private static void runBands(int bands, BufferFactory bufferFactory, BandOperation operation) {
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        // Несколько задач на ядро для балансировки, но буфер выделяется один раз на задачу
+        int threshold = Math.max(1, bands / (pool.getParallelism() * 4));
+        pool.invoke(new BandTask(0, bands, threshold, bufferFactory, operation));
+    }
+
+    private static class BandTask extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final int threshold;
+        private final BufferFactory bufferFactory;
+        private final BandOperation operation;
+
+        BandTask(int from, int to, int threshold, BufferFactory bufferFactory, BandOperation operation) {
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+            this.bufferFactory = bufferFactory;
+            this.operation = operation;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= threshold) {
+                int[] buffer = bufferFactory.create();
+                for (int band = from; band < to; band++) {
+                    operation.run(band, buffer);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new BandTask(from, middle, threshold, bufferFactory, operation),
+                    new BandTask(middle, to, threshold, bufferFactory, operation));
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.imageeditor.utils;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.imageeditor.history.CommandJournal;
+import com.example.imageeditor.models.ProjectFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Сохранение и открытие файлов проекта в папке приложения. Файл пишется и читается в фоне,
+// результат возвращается в главный поток
+public class ProjectStore {
+    private static final String TAG = "ProjectStore";
+    private static final String PROJECTS_DIR = "projects";
+    // Журнал текущей сессии редактора; остается после аварийного завершения
+    private static final String SESSION_JOURNAL = "session.journal";
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor();
+
+    public interface SaveCallback {
+        void onProjectSaved(File file);
+
+        void onProjectSaveFailed(Exception error);
+    }
+
+    public interface LoadCallback {
+        void onProjectLoaded(ProjectFile project);
+
+        void onProjectLoadFailed(Exception error);
+    }
+
+    public interface SessionCallback {
+        // project - снимок проекта, с которого началась сессия, или null
+        void onSessionLoaded(CommandJournal.Replay replay, ProjectFile project);
+
+        void onSessionLoadFailed(Exception error);
+    }
+
+    public static File getJournalFile(Context context) {
+        return new File(context.getFilesDir(), SESSION_JOURNAL);
+    }
+
+    // Прерванную сессию нужно восстановить, если об этом попросили явно или если система
+    // пересоздает редактор после завершения процесса в фоне: тогда выбора в MainActivity не было
+    public static boolean shouldRestoreSession(File journalFile, boolean restoreRequested, boolean processRestarted) {
+        return restoreRequested || (processRestarted && CommandJournal.hasSession(journalFile));
+    }
+
+    public static File getProjectsDir(Context context) {
+        return new File(context.getFilesDir(), PROJECTS_DIR);
+    }
+
+    // Последний измененный файл проекта или null
+    public static File findLatestProject(Context context) {
+        File[] files = getProjectsDir(context).listFiles((dir, name) -> name.endsWith(ProjectFile.EXTENSION));
+        File latest = null;
+        if (files != null) {
+            for (File file : files) {
+                if (latest == null || file.lastModified() > latest.lastModified()) {
+                    latest = file;
+                }
+            }
+        }
+        return latest;
+    }
+
+    // Объекты сцены меняются на месте, поэтому кодирование идет в вызывающем потоке,
+    // а в фоне остается только запись готового буфера
+    public static void save(Context context, ProjectFile project, String name, SaveCallback callback) {
+        Handler mainHandler = new Handler(Looper.getMainLooper());
+        File file = new File(getProjectsDir(context), name + ProjectFile.EXTENSION);
+        ByteBuffer data;
+        try {
+            data = project.encode();
+        } catch (IOException e) {
+            Log.e(TAG, "Ошибка кодирования проекта", e);
+            callback.onProjectSaveFailed(e);
+            return;
+        }
+
+        EXECUTOR.execute(() -> {
+            try {
+                File dir = file.getParentFile();
+                if (!dir.isDirectory() && !dir.mkdirs()) {
+                    throw new IOException("Не удалось создать папку проектов " + dir);
+                }
+                ProjectFile.write(file, data);
+                mainHandler.post(() -> callback.onProjectSaved(file));
+            } catch (IOException e) {
+                Log.e(TAG, "Ошибка записи проекта", e);
+                mainHandler.post(() -> callback.onProjectSaveFailed(e));
+            }
+        });
+    }
+
+    // Файл отображается в память: точки штрихов читаются по мере отрисовки и изменения
+    public static void load(File file, LoadCallback callback) {
+        Handler mainHandler = new Handler(Looper.getMainLooper());
+        EXECUTOR.execute(() -> {
+            try {
+                ProjectFile project = ProjectFile.map(file);
+                mainHandler.post(() -> callback.onProjectLoaded(project));
+            } catch (IOException | RuntimeException e) {
+                Log.e(TAG, "Ошибка чтения проекта " + file, e);
+                mainHandler.post(() -> callback.onProjectLoadFailed(e));
+            }
+        });
+    }
+
+    // Прерванная сессия из журнала; команды применяются в главном потоке после загрузки изображения
+    public static void loadSession(Context context, SessionCallback callback) {
+        Handler mainHandler = new Handler(Looper.getMainLooper());
+        File file = getJournalFile(context);
+        EXECUTOR.execute(() -> {
+            try {
+                CommandJournal.Replay replay = CommandJournal.read(file);
+                ByteBuffer projectData = replay.getProject();
+                ProjectFile project = projectData != null ? ProjectFile.decode(projectData) : null;
+                mainHandler.post(() -> callback.onSessionLoaded(replay, project));
+            } catch (IOException | RuntimeException e) {
+                Log.e(TAG, "Ошибка чтения журнала сессии", e);
+                // Нечитаемый журнал (поврежденный или старой версии) не восстановить, а пока он
+                // лежит на диске, новый журнал не создается
+                if (!file.delete()) {
+                    Log.w(TAG, "Не удалось удалить журнал сессии " + file);
+                }
+                mainHandler.post(() -> callback.onSessionLoadFailed(e));
+            }
+        });
+    }
+}
@@ -0,0 +1,192 @@
+package com.example.imageeditor.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Детализация при просмотре: декодирует через BitmapRegionDecoder только видимые тайлы исходного
+// файла, когда экран показывает больше деталей, чем есть в рабочей битмапе. Уровень детализации -
+// степень двойки inSampleSize. Только для отображения: правки, сохранение проекта и экспорт в галерею
+// работают с рабочей битмапой (не больше BitmapUtils.MAX_WORKING_SIZE по стороне), а после обрезки,
+// поворота или отражения источник освобождается, потому что уже не совпадает с рабочей битмапой.
+// Экспорт в полном разрешении не делается: Bitmap.compress кодирует только битмапу целиком,
+// а для 50 Мп это 200 МБ пикселей
+public class TiledImageSource {
+    private static final String TAG = "TiledImageSource";
+    private static final int TILE_SIZE = 512;
+
+    private final BitmapRegionDecoder decoder;
+    private final int width;
+    private final int height;
+    private final LruCache<Long, Bitmap> tileCache;
+    private final Set<Long> pendingTiles = ConcurrentHashMap.newKeySet();
+    private final ExecutorService decodeExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Paint tilePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    private final Rect tileRegion = new Rect();
+    private final RectF tileDestination = new RectF();
+
+    private volatile int currentLevel = -1;
+    private volatile boolean released = false;
+    private Runnable onTileLoadedListener;
+
+    private TiledImageSource(BitmapRegionDecoder decoder) {
+        this.decoder = decoder;
+        this.width = decoder.getWidth();
+        this.height = decoder.getHeight();
+
+        // Кэш тайлов занимает не больше 1/8 доступной памяти
+        int cacheBytes = (int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 8);
+        this.tileCache = new LruCache<Long, Bitmap>(cacheBytes) {
+            @Override
+            protected int sizeOf(Long key, Bitmap tile) {
+                return tile.getByteCount();
+            }
+        };
+    }
+
+    // Возвращает null, если формат изображения не поддерживает декодирование по областям.
+    // Данные копируются декодером, массив можно не хранить.
+    public static TiledImageSource open(byte[] encodedData, int length) {
+        try {
+            return new TiledImageSource(BitmapRegionDecoder.newInstance(encodedData, 0, length, false));
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Декодирование по областям недоступно", e);
+            return null;
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public void setOnTileLoadedListener(Runnable listener) {
+        this.onTileLoadedListener = listener;
+    }
+
+    // Наибольший inSampleSize (степень двойки), при котором тайл не мельче экранных пикселей
+    public static int sampleSizeForScale(float scale) {
+        int sampleSize = 1;
+        while (scale * sampleSize * 2 <= 1f) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    // Рисует тайлы, пересекающие visibleRect (в координатах полного изображения).
+    // fullToScreen переводит координаты полного изображения в координаты холста.
+    public void draw(Canvas canvas, Matrix fullToScreen, RectF visibleRect, float scale) {
+        if (released) return;
+
+        int sampleSize = sampleSizeForScale(scale);
+        int level = Integer.numberOfTrailingZeros(sampleSize);
+        currentLevel = level;
+
+        int tileExtent = TILE_SIZE * sampleSize;
+        int firstColumn = Math.max(0, (int) (visibleRect.left / tileExtent));
+        int firstRow = Math.max(0, (int) (visibleRect.top / tileExtent));
+        int lastColumn = Math.min((width - 1) / tileExtent, (int) (visibleRect.right / tileExtent));
+        int lastRow = Math.min((height - 1) / tileExtent, (int) (visibleRect.bottom / tileExtent));
+
+        canvas.save();
+        canvas.concat(fullToScreen);
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                long key = tileKey(level, column, row);
+                Bitmap tile = tileCache.get(key);
+                if (tile != null) {
+                    setTileRegion(column, row, tileExtent);
+                    tileDestination.set(tileRegion);
+                    canvas.drawBitmap(tile, null, tileDestination, tilePaint);
+                } else {
+                    requestTile(key, level, column, row, sampleSize);
+                }
+            }
+        }
+        canvas.restore();
+    }
+
+    private void requestTile(long key, int level, int column, int row, int sampleSize) {
+        if (!pendingTiles.add(key)) return;
+
+        decodeExecutor.execute(() -> {
+            try {
+                // Тайлы уровня, который уже не отображается, не декодируем
+                if (released || level != currentLevel) return;
+
+                // Задачи выполняются в одном потоке, поэтому декодер не нужно синхронизировать
+
+                int tileExtent = TILE_SIZE * sampleSize;
+                Rect region = new Rect(column * tileExtent, row * tileExtent,
+                        Math.min(width, (column + 1) * tileExtent), Math.min(height, (row + 1) * tileExtent));
+                BitmapFactory.Options options = new BitmapFactory.Options();
+                options.inSampleSize = sampleSize;
+
+                Bitmap tile = decoder.decodeRegion(region, options);
+                if (tile != null) {
+                    // Источник могли освободить, пока тайл декодировался
+                    if (released) {
+                        tile.recycle();
+                        return;
+                    }
+                    tileCache.put(key, tile);
+                    // release мог пройти между проверкой и put: его evictAll этот тайл уже не застал
+                    if (released) {
+                        Bitmap evicted = tileCache.remove(key);
+                        if (evicted != null) {
+                            evicted.recycle();
+                        }
+                        return;
+                    }
+                    mainHandler.post(() -> {
+                        if (!released && onTileLoadedListener != null) {
+                            onTileLoadedListener.run();
+                        }
+                    });
+                }
+            } catch (RuntimeException | OutOfMemoryError e) {
+                Log.e(TAG, "Ошибка декодирования тайла " + column + "," + row, e);
+            } finally {
+                pendingTiles.remove(key);
+            }
+        });
+    }
+
+    private void setTileRegion(int column, int row, int tileExtent) {
+        tileRegion.set(column * tileExtent, row * tileExtent,
+                Math.min(width, (column + 1) * tileExtent), Math.min(height, (row + 1) * tileExtent));
+    }
+
+    // Ключ кэша: уровень, столбец и строка тайла в одном long
+    private static long tileKey(int level, int column, int row) {
+        return ((long) level << 48) | ((long) column << 24) | row;
+    }
+
+    public void release() {
+        released = true;
+        tileCache.evictAll();
+        // Декодер освобождается в том же потоке, где он используется, чтобы не ждать на UI-потоке
+        decodeExecutor.execute(decoder::recycle);
+        decodeExecutor.shutdown();
+    }
+}
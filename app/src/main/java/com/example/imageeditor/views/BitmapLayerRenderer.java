@@ -0,0 +1,116 @@
+package com.example.imageeditor.views;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.PorterDuff;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.util.Log;
+
+import com.example.imageeditor.models.DrawingObject;
+import com.example.imageeditor.models.DrawingScene;
+import com.example.imageeditor.utils.BitmapPool;
+
+import java.util.ArrayList;
+
+// Объекты растеризуются в битмапу размером с изображение, которая рисуется одним drawBitmap.
+// Работает на любом холсте; перестраивается только видимая часть слоя
+class BitmapLayerRenderer implements DrawingLayerRenderer {
+    private static final String TAG = "BitmapLayerRenderer";
+
+    private final DrawingScene scene;
+    private final RenderMetrics metrics;
+
+    private Bitmap layer;
+    private Canvas layerCanvas;
+    private boolean dirty = true;
+    // Часть изображения, для которой слой актуален; за ее пределами объекты отсечены как невидимые
+    private final Rect validRect = new Rect();
+    private final Rect rebuildRect = new Rect();
+    private final RectF area = new RectF();
+    private final RectF objectBounds = new RectF();
+    private final ArrayList<DrawingObject> visibleObjects = new ArrayList<>();
+
+    BitmapLayerRenderer(DrawingScene scene, RenderMetrics metrics) {
+        this.scene = scene;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void invalidate() {
+        dirty = true;
+    }
+
+    @Override
+    public void onObjectAppended(DrawingObject object) {
+        // Новый объект просто дорисовываем поверх актуального слоя
+        if (!dirty && layerCanvas != null) {
+            object.draw(layerCanvas);
+        }
+    }
+
+    @Override
+    public void draw(Canvas canvas, Matrix imageMatrix, int imageWidth, int imageHeight, Rect visibleArea) {
+        if (dirty || !validRect.contains(visibleArea)) {
+            // С запасом в половину экрана, чтобы прокрутка не перестраивала слой каждый кадр
+            rebuildRect.set(visibleArea);
+            rebuildRect.inset(-visibleArea.width() / 2, -visibleArea.height() / 2);
+            if (!rebuildRect.intersect(0, 0, imageWidth, imageHeight)) {
+                rebuildRect.setEmpty();
+            }
+            rebuild(imageWidth, imageHeight, rebuildRect);
+        }
+        if (layer != null) {
+            canvas.drawBitmap(layer, imageMatrix, null);
+        }
+    }
+
+    // Очищается и перерисовывается только часть слоя rect; рисуются объекты, пересекающие ее
+    private void rebuild(int width, int height, Rect rect) {
+        long startTime = System.nanoTime();
+        if (layer == null || layer.getWidth() != width || layer.getHeight() != height) {
+            release();
+            try {
+                layer = BitmapPool.getInstance().get(width, height, Bitmap.Config.ARGB_8888);
+                layerCanvas = new Canvas(layer);
+            } catch (OutOfMemoryError e) {
+                Log.e(TAG, "Не хватает памяти для слоя рисования", e);
+                return;
+            }
+        }
+
+        area.set(rect);
+        visibleObjects.clear();
+        scene.query(area, visibleObjects);
+        int saveCount = layerCanvas.save();
+        layerCanvas.clipRect(rect);
+        layerCanvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+        int drawn = 0;
+        for (int i = 0, size = visibleObjects.size(); i < size; i++) {
+            DrawingObject obj = visibleObjects.get(i);
+            obj.getBounds(objectBounds);
+            if (!RectF.intersects(objectBounds, area)) continue;
+            obj.draw(layerCanvas);
+            drawn++;
+        }
+        layerCanvas.restoreToCount(saveCount);
+        visibleObjects.clear();
+
+        validRect.set(rect);
+        dirty = false;
+        metrics.onLayerRebuilt(scene.size(), drawn, System.nanoTime() - startTime);
+    }
+
+    @Override
+    public void release() {
+        if (layer != null) {
+            BitmapPool.getInstance().put(layer);
+            layer = null;
+            layerCanvas = null;
+        }
+        validRect.setEmpty();
+        dirty = true;
+    }
+}
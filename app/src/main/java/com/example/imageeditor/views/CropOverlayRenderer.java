@@ -0,0 +1,104 @@
+package com.example.imageeditor.views;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.RectF;
+
+// Отрисовка интерфейса обрезки. Все кисти, путь затемнения и координаты маркеров
+// создаются один раз, поэтому кадр в режиме обрезки не выделяет память.
+public class CropOverlayRenderer {
+    private static final int HANDLE_COUNT = 8;
+
+    private final Paint framePaint = new Paint();
+    private final Paint dimPaint = new Paint();
+    private final Paint handleFillPaint = new Paint();
+    private final Paint handleStrokePaint = new Paint();
+    private final Path dimPath = new Path();
+    // Координаты маркеров парами x,y в порядке индексов маркеров
+    private final float[] handlePoints = new float[HANDLE_COUNT * 2];
+
+    private final float handleRadius;
+
+    public CropOverlayRenderer(float handleRadius) {
+        this.handleRadius = handleRadius;
+
+        framePaint.setColor(0xFFFFFFFF);
+        framePaint.setStyle(Paint.Style.STROKE);
+        framePaint.setStrokeWidth(3f);
+
+        // Внешняя область затемнения
+        dimPaint.setColor(0x88000000);
+        dimPaint.setStyle(Paint.Style.FILL);
+        dimPath.setFillType(Path.FillType.EVEN_ODD);
+
+        handleFillPaint.setColor(0xFFFFFFFF);
+        handleFillPaint.setStyle(Paint.Style.FILL);
+
+        handleStrokePaint.setColor(0xFF000000);
+        handleStrokePaint.setStyle(Paint.Style.STROKE);
+        handleStrokePaint.setStrokeWidth(2f);
+    }
+
+    public float getHandleRadius() {
+        return handleRadius;
+    }
+
+    public void draw(Canvas canvas, RectF imageBounds, RectF cropRect) {
+        // Затемнение вокруг области обрезки: изображение минус рамка по правилу even-odd
+        dimPath.rewind();
+        dimPath.addRect(imageBounds, Path.Direction.CW);
+        dimPath.addRect(cropRect, Path.Direction.CW);
+        canvas.drawPath(dimPath, dimPaint);
+
+        // Рамка области обрезки
+        canvas.drawRect(cropRect, framePaint);
+
+        // Маркеры углов и сторон
+        updateHandlePoints(cropRect);
+        for (int i = 0; i < HANDLE_COUNT; i++) {
+            float x = handlePoints[i * 2];
+            float y = handlePoints[i * 2 + 1];
+            if (canvas.quickReject(x - handleRadius, y - handleRadius,
+                    x + handleRadius, y + handleRadius, Canvas.EdgeType.AA)) {
+                continue;
+            }
+            canvas.drawCircle(x, y, handleRadius, handleFillPaint);
+            canvas.drawCircle(x, y, handleRadius, handleStrokePaint);
+        }
+    }
+
+    // Определение, какой маркер обрезки находится под указанной точкой
+    public int findHandleAt(RectF cropRect, float x, float y) {
+        updateHandlePoints(cropRect);
+        float touchRadius = handleRadius * 1.5f;
+        float touchRadiusSq = touchRadius * touchRadius;
+
+        for (int i = 0; i < HANDLE_COUNT; i++) {
+            float dx = x - handlePoints[i * 2];
+            float dy = y - handlePoints[i * 2 + 1];
+            if (dx * dx + dy * dy <= touchRadiusSq) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void updateHandlePoints(RectF cropRect) {
+        float centerX = (cropRect.left + cropRect.right) / 2;
+        float centerY = (cropRect.top + cropRect.bottom) / 2;
+        setHandle(0, cropRect.left, cropRect.top);       // левый верхний
+        setHandle(1, cropRect.right, cropRect.top);      // правый верхний
+        setHandle(2, cropRect.left, cropRect.bottom);    // левый нижний
+        setHandle(3, cropRect.right, cropRect.bottom);   // правый нижний
+        setHandle(4, centerX, cropRect.top);             // верх центр
+        setHandle(5, centerX, cropRect.bottom);          // низ центр
+        setHandle(6, cropRect.left, centerY);            // левый центр
+        setHandle(7, cropRect.right, centerY);           // правый центр
+    }
+
+    private void setHandle(int index, float x, float y) {
+        handlePoints[index * 2] = x;
+        handlePoints[index * 2 + 1] = y;
+    }
+}
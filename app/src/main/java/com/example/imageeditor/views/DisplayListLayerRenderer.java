@@ -0,0 +1,85 @@
+package com.example.imageeditor.views;
+
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Rect;
+import android.graphics.RecordingCanvas;
+import android.graphics.RenderNode;
+import android.os.Build;
+
+import androidx.annotation.RequiresApi;
+
+import com.example.imageeditor.models.DrawingObject;
+import com.example.imageeditor.models.DrawingScene;
+
+// Объекты записываются в RenderNode один раз и проигрываются аппаратным рендерером в каждом
+// кадре; запись обновляется только при изменении сцены. Векторы растеризуются в масштабе экрана,
+// поэтому остаются четкими при увеличении, а невидимое отсекает сам рендерер
+@RequiresApi(Build.VERSION_CODES.Q)
+class DisplayListLayerRenderer implements DrawingLayerRenderer {
+    private final DrawingScene scene;
+    private final RenderMetrics metrics;
+    private final RenderNode node = new RenderNode("drawings");
+    private boolean dirty = true;
+    private int recordedWidth;
+    private int recordedHeight;
+
+    DisplayListLayerRenderer(DrawingScene scene, RenderMetrics metrics) {
+        this.scene = scene;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void invalidate() {
+        dirty = true;
+    }
+
+    @Override
+    public void onObjectAppended(DrawingObject object) {
+        // Дописать в готовый список нельзя, но перезапись - только команды, без растеризации
+        dirty = true;
+    }
+
+    @Override
+    public void draw(Canvas canvas, Matrix imageMatrix, int imageWidth, int imageHeight, Rect visibleArea) {
+        int saveCount = canvas.save();
+        canvas.concat(imageMatrix);
+        if (canvas.isHardwareAccelerated()) {
+            if (dirty || !node.hasDisplayList() || imageWidth != recordedWidth || imageHeight != recordedHeight) {
+                record(imageWidth, imageHeight);
+            }
+            canvas.drawRenderNode(node);
+        } else {
+            // Программный холст (например, отрисовка вида в битмапу) не умеет проигрывать RenderNode
+            canvas.clipRect(0, 0, imageWidth, imageHeight);
+            for (int i = 0, size = scene.size(); i < size; i++) {
+                scene.get(i).draw(canvas);
+            }
+        }
+        canvas.restoreToCount(saveCount);
+    }
+
+    private void record(int width, int height) {
+        long startTime = System.nanoTime();
+        // Границы узла совпадают с изображением, поэтому объекты обрезаются по нему, как в битмапе
+        node.setPosition(0, 0, width, height);
+        RecordingCanvas recordingCanvas = node.beginRecording(width, height);
+        try {
+            for (int i = 0, size = scene.size(); i < size; i++) {
+                scene.get(i).draw(recordingCanvas);
+            }
+        } finally {
+            node.endRecording();
+        }
+        recordedWidth = width;
+        recordedHeight = height;
+        dirty = false;
+        metrics.onLayerRebuilt(scene.size(), scene.size(), System.nanoTime() - startTime);
+    }
+
+    @Override
+    public void release() {
+        node.discardDisplayList();
+        dirty = true;
+    }
+}
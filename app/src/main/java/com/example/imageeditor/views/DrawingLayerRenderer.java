@@ -0,0 +1,22 @@
+package com.example.imageeditor.views;
+
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Rect;
+
+import com.example.imageeditor.models.DrawingObject;
+
+// Отрисовка зафиксированных объектов сцены поверх изображения. EditorView только сообщает
+// об изменениях сцены, а реализация решает, что и когда перестраивать
+interface DrawingLayerRenderer {
+    // Сцена изменилась произвольно: undo/redo, смена или трансформация изображения
+    void invalidate();
+
+    // В конец сцены добавлен объект; его можно дорисовать без полной перестройки
+    void onObjectAppended(DrawingObject object);
+
+    // visibleArea - видимая на экране часть изображения в его координатах
+    void draw(Canvas canvas, Matrix imageMatrix, int imageWidth, int imageHeight, Rect visibleArea);
+
+    void release();
+}
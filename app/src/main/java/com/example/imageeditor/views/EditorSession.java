@@ -0,0 +1,133 @@
+package com.example.imageeditor.views;
+
+import android.graphics.Bitmap;
+import android.graphics.RectF;
+
+import com.example.imageeditor.history.HistoryManager;
+import com.example.imageeditor.history.ImageHost;
+import com.example.imageeditor.models.DrawingScene;
+import com.example.imageeditor.utils.BitmapPool;
+import com.example.imageeditor.utils.TiledImageSource;
+
+import java.io.File;
+
+// Состояние редактора, которое переживает пересоздание активности (поворот экрана, смена темы):
+// объекты сцены, история и рабочая битмапа. Новый EditorView подключается к сессии и продолжает
+// с тем же изображением без повторного декодирования
+public class EditorSession {
+    private static final String HISTORY_SPILL_FILE = "history.bin";
+
+    private final DrawingScene scene = new DrawingScene();
+    private final HistoryManager historyManager;
+
+    // Пока сессия подключена, изображением и обрезкой владеет View; здесь их копия на время
+    // пересоздания, которую View сохраняет при отключении
+    Bitmap workingBitmap;
+    int baseImageWidth;
+    int baseImageHeight;
+    TiledImageSource tiledImageSource;
+    boolean cropMode;
+    // Рамка обрезки в координатах рабочей битмапы: экранные координаты после поворота другие
+    RectF cropRect;
+
+    private EditorView view;
+    private boolean released;
+    // Экспорт в фоне читает живые битмапу и сцену: пока он идет, правки запрещены,
+    // а освобождение сессии откладывается до его окончания. Меняется только в UI-потоке
+    private int editingLocks;
+
+    // Команды истории живут дольше View, поэтому обращаются к битмапе через сессию,
+    // а она - к View, подключенному сейчас
+    private final ImageHost imageHost = new ImageHost() {
+        @Override
+        public Bitmap getImage() {
+            return view != null ? view.getWorkingBitmap() : workingBitmap;
+        }
+
+        @Override
+        public void beforeImageChange() {
+            if (view != null) {
+                view.beforeImageChange();
+            }
+        }
+
+        @Override
+        public void setImage(Bitmap image) {
+            if (view != null) {
+                view.onImageReplaced(image);
+            } else {
+                workingBitmap = image;
+            }
+        }
+    };
+
+    public EditorSession(File cacheDir) {
+        // История удерживает не больше восьмой части кучи, остальное выгружается в кэш
+        historyManager = new HistoryManager(new File(cacheDir, HISTORY_SPILL_FILE),
+                Runtime.getRuntime().maxMemory() / 8);
+    }
+
+    DrawingScene getScene() {
+        return scene;
+    }
+
+    HistoryManager getHistoryManager() {
+        return historyManager;
+    }
+
+    ImageHost getImageHost() {
+        return imageHost;
+    }
+
+    void setView(EditorView view) {
+        this.view = view;
+    }
+
+    // Изображение уже загружено, и его не нужно декодировать заново
+    public boolean hasImage() {
+        return workingBitmap != null || (view != null && view.getWorkingBitmap() != null);
+    }
+
+    boolean isReleased() {
+        return released;
+    }
+
+    // Блокирует правки на время фонового чтения битмапы и сцены; каждому вызову - свой unlockEditing
+    public void lockEditing() {
+        editingLocks++;
+    }
+
+    public void unlockEditing() {
+        editingLocks--;
+        if (editingLocks == 0 && released) {
+            releaseResources();
+        }
+    }
+
+    public boolean isEditingLocked() {
+        return editingLocks > 0;
+    }
+
+    // Сессия больше не нужна: активность закрыта окончательно. Подключенный View может еще
+    // оставаться в окне; свое состояние он освободит сам при отключении
+    public void release() {
+        released = true;
+        if (editingLocks == 0) {
+            releaseResources();
+        }
+    }
+
+    private void releaseResources() {
+        historyManager.release();
+        scene.clear();
+        if (tiledImageSource != null) {
+            tiledImageSource.release();
+            tiledImageSource = null;
+        }
+        if (workingBitmap != null) {
+            BitmapPool.getInstance().put(workingBitmap);
+            workingBitmap = null;
+        }
+        cropRect = null;
+    }
+}
@@ -6,41 +6,146 @@ import android.graphics.Canvas;
 import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.PointF;
+import android.graphics.Rect;
 import android.graphics.RectF;
 import android.graphics.Typeface;
+import android.os.Build;
 import android.util.AttributeSet;
 import android.util.Log;
+import android.view.GestureDetector;
 import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
 import android.view.View;
+import android.widget.OverScroller;
 
+import com.example.imageeditor.history.CommandJournal;
+import com.example.imageeditor.history.CropCommand;
 import com.example.imageeditor.history.DrawCommand;
+import com.example.imageeditor.history.FlipCommand;
 import com.example.imageeditor.history.HistoryManager;
+import com.example.imageeditor.history.ImageHost;
+import com.example.imageeditor.history.RotateCommand;
 import com.example.imageeditor.models.DrawingCircle;
 import com.example.imageeditor.models.DrawingLine;
 import com.example.imageeditor.models.DrawingObject;
 import com.example.imageeditor.models.DrawingRectangle;
+import com.example.imageeditor.models.DrawingScene;
 import com.example.imageeditor.models.DrawingText;
+import com.example.imageeditor.models.ProjectFile;
+import com.example.imageeditor.models.StrokeFilter;
+import com.example.imageeditor.utils.BitmapPool;
+import com.example.imageeditor.utils.MipmapPyramid;
+import com.example.imageeditor.utils.TiledImageSource;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 
 public class EditorView extends View {
     private static final String TAG = "EditorView";
 
-    private Canvas bitmapCanvas;
-    private Bitmap originalBitmap;
     private Bitmap workingBitmap;
+    // Размер рабочей битмапы сразу после загрузки, до правок; от него отсчитывается геометрия проекта
+    private int baseImageWidth;
+    private int baseImageHeight;
+
+    // Отрисовка зафиксированных объектов; бэкенд выбирается при первой отрисовке
+    private DrawingLayerRenderer drawingLayerRenderer;
+    private final Rect visibleImageRect = new Rect();
+    private final RectF visibleArea = new RectF();
+    private final RenderMetrics renderMetrics = new RenderMetrics();
+
+    // Превью низкого разрешения, показывается до загрузки рабочей битмапы
+    private Bitmap previewBitmap;
+    private int previewTargetWidth;
+    private int previewTargetHeight;
+    private final Matrix previewMatrix = new Matrix();
+    private final Paint previewPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    // Сцена, история и доступ команд к рабочей битмапе берутся из сессии. Активность подключает
+    // ее через attachSession сразу после создания View, до изображения и любых правок, поэтому
+    // workingBitmap != null означает, что сессия подключена
+    private EditorSession session;
+    private ImageHost imageHost;
+
+    // Тайлы исходного файла для детализации при масштабе крупнее рабочей битмапы; только просмотр
+    private TiledImageSource tiledImageSource;
+    private final Matrix tileMatrix = new Matrix();
+    private final RectF visibleTileRect = new RectF();
+    private final float[] matrixValues = new float[9];
     private Matrix imageMatrix = new Matrix();
     private Matrix inverseMatrix = new Matrix();
     private RectF imageBounds = new RectF();
 
+    // Уменьшенные копии рабочей битмапы для отрисовки при масштабе меньше 100%
+    private MipmapPyramid mipmapPyramid;
+
+    // Масштабирование и прокрутка меняют только imageMatrix, битмапы при этом не пересчитываются
+    private static final float MAX_ZOOM = 8f;
+    private ScaleGestureDetector scaleDetector;
+    private GestureDetector panDetector;
+    private OverScroller flingScroller;
+    // Текущая серия касаний управляет видом, а не рисованием
+    private boolean viewportGesture;
+    private float fitScale = 1f;
+    private float lastFocusX, lastFocusY;
+
+    private final ScaleGestureDetector.OnScaleGestureListener scaleListener =
+            new ScaleGestureDetector.SimpleOnScaleGestureListener() {
+        @Override
+        public boolean onScaleBegin(ScaleGestureDetector detector) {
+            lastFocusX = detector.getFocusX();
+            lastFocusY = detector.getFocusY();
+            return true;
+        }
+
+        @Override
+        public boolean onScale(ScaleGestureDetector detector) {
+            float focusX = detector.getFocusX();
+            float focusY = detector.getFocusY();
+            float scale = getCurrentScale();
+            float target = Math.max(fitScale, Math.min(scale * detector.getScaleFactor(), getMaxScale()));
+            // Масштаб вокруг фокуса жеста и сдвиг вслед за пальцами
+            imageMatrix.postScale(target / scale, target / scale, focusX, focusY);
+            imageMatrix.postTranslate(focusX - lastFocusX, focusY - lastFocusY);
+            lastFocusX = focusX;
+            lastFocusY = focusY;
+            onViewportChanged();
+            return true;
+        }
+    };
+
+    private final GestureDetector.SimpleOnGestureListener panListener = new GestureDetector.SimpleOnGestureListener() {
+        @Override
+        public boolean onDown(MotionEvent e) {
+            flingScroller.forceFinished(true);
+            return true;
+        }
+
+        @Override
+        public boolean onScroll(MotionEvent e1, MotionEvent e2, float distanceX, float distanceY) {
+            // Сдвиг двумя пальцами уже учтен в обработчике масштаба
+            if (!viewportGesture || scaleDetector.isInProgress() || e2.getPointerCount() > 1) return false;
+            imageMatrix.postTranslate(-distanceX, -distanceY);
+            onViewportChanged();
+            return true;
+        }
+
+        @Override
+        public boolean onFling(MotionEvent e1, MotionEvent e2, float velocityX, float velocityY) {
+            if (!viewportGesture) return false;
+            startFling(velocityX, velocityY);
+            return true;
+        }
+    };
+
     private int brushColor = 0xFF000000;
     private int brushSize = 5;
 
     private DrawingObject currentDrawingObject;
-    private List<DrawingObject> drawingObjects = new ArrayList<>();
-    private HistoryManager historyManager = new HistoryManager();
+    private DrawingScene drawingObjects;
+    private HistoryManager historyManager;
 
     private String drawingText = "";
     private String fontFamily = "sans-serif";
@@ -48,12 +153,30 @@ public class EditorView extends View {
     private int textSize = 40;
 
     private RectF cropRect;
+    // Рамка обрезки из сессии в координатах битмапы; переводится в экранные после разметки View
+    private RectF restoredCropRect;
     private boolean cropMode = false;
     private int cropHandleRadius = 30;
+    private final CropOverlayRenderer cropOverlayRenderer = new CropOverlayRenderer(cropHandleRadius);
     private int selectedCropHandle = -1;
     private float lastTouchX, lastTouchY;
     private boolean isDraggingCropArea = false;
 
+    // Буфер сэмплов касания (x,y парами), переиспользуется между событиями
+    private float[] touchPoints = new float[64];
+
+    // Прореживание штриха задается в экранных пикселях и не зависит от масштаба изображения
+    private static final float STROKE_MIN_DISTANCE_PX = 1.5f;
+    private static final float STROKE_TOLERANCE_PX = 0.5f;
+    private final StrokeFilter strokeFilter = new StrokeFilter();
+
+    // Запас в экранных пикселях на сглаживание краев при частичной перерисовке
+    private static final int DIRTY_MARGIN = 2;
+    private final RectF dirtyBounds = new RectF();
+    private final RectF objectBounds = new RectF();
+    private final RectF previousCropRect = new RectF();
+    private final Rect dirtyRect = new Rect();
+
     public enum DrawingMode {
         NONE, LINE, RECTANGLE, CIRCLE, TEXT
     }
@@ -77,25 +200,97 @@ public class EditorView extends View {
 
     private void init() {
         imageMatrix = new Matrix();
+        scaleDetector = new ScaleGestureDetector(getContext(), scaleListener);
+        panDetector = new GestureDetector(getContext(), panListener);
+        panDetector.setIsLongpressEnabled(false);
+        flingScroller = new OverScroller(getContext());
+    }
+
+    // Фоновый экспорт читает битмапу и сцену без копирования, поэтому правки на это время запрещены
+    private boolean isEditingLocked() {
+        return session != null && session.isEditingLocked();
+    }
+
+    // Подключает сессию редактора: новую или пережившую пересоздание активности. Во втором случае
+    // изображение, рисунки, история и обрезка продолжаются с того же места
+    public void attachSession(EditorSession session) {
+        if (session == this.session) return;
+        if (this.session != null) {
+            detachSession();
+        }
+        this.session = session;
+        session.setView(this);
+        drawingObjects = session.getScene();
+        historyManager = session.getHistoryManager();
+        imageHost = session.getImageHost();
+        cancelCurrentDrawing();
+        releaseDrawingLayer();
+        if (session.workingBitmap != null) {
+            if (previewBitmap != null) {
+                previewBitmap.recycle();
+                previewBitmap = null;
+            }
+            releaseMipmapPyramid();
+            workingBitmap = session.workingBitmap;
+            baseImageWidth = session.baseImageWidth;
+            baseImageHeight = session.baseImageHeight;
+            session.workingBitmap = null;
+        }
+        setTiledImageSource(session.tiledImageSource);
+        session.tiledImageSource = null;
+        cropMode = session.cropMode;
+        restoredCropRect = session.cropRect;
+        session.cropRect = null;
+        imageMatrix.reset();
+        updateInverseMatrix();
+        fitImageToView();
+        invalidate();
+    }
+
+    // Состояние, которым владеет View, возвращается в сессию до подключения к новому View
+    private void detachSession() {
+        session.workingBitmap = workingBitmap;
+        session.baseImageWidth = baseImageWidth;
+        session.baseImageHeight = baseImageHeight;
+        if (tiledImageSource != null) {
+            tiledImageSource.setOnTileLoadedListener(null);
+        }
+        session.tiledImageSource = tiledImageSource;
+        tiledImageSource = null;
+        session.cropMode = cropMode;
+        if (cropRect != null) {
+            session.cropRect = new RectF(cropRect);
+            inverseMatrix.mapRect(session.cropRect);
+        } else {
+            session.cropRect = restoredCropRect;
+        }
+        session.setView(null);
+        workingBitmap = null;
     }
 
     @Override
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
 
+        if (workingBitmap == null && previewBitmap != null) {
+            canvas.drawBitmap(previewBitmap, previewMatrix, previewPaint);
+        }
+
         if (workingBitmap != null) {
-            canvas.drawBitmap(workingBitmap, imageMatrix, null);
+            drawWorkingBitmap(canvas);
+            if (tiledImageSource != null) {
+                drawImageTiles(canvas);
+            }
             // Обновляем границы изображения
             imageBounds.set(0, 0, workingBitmap.getWidth(), workingBitmap.getHeight());
             imageMatrix.mapRect(imageBounds);
         }
 
-        // Рисуем все объекты с учетом текущей матрицы трансформации
-        for (DrawingObject obj : drawingObjects) {
-            canvas.save();
-            canvas.concat(imageMatrix);
-            obj.draw(canvas);
-            canvas.restore();
+        // Рисуем зафиксированные объекты
+        if (workingBitmap != null && !drawingObjects.isEmpty()) {
+            computeVisibleImageRect(visibleImageRect);
+            getDrawingLayerRenderer(canvas).draw(canvas, imageMatrix,
+                    workingBitmap.getWidth(), workingBitmap.getHeight(), visibleImageRect);
         }
 
         // Рисуем текущий объект рисования
@@ -108,66 +303,67 @@ public class EditorView extends View {
 
         // Рисуем интерфейс обрезки, если активен режим обрезки
         if (cropMode && cropRect != null) {
-            Paint cropPaint = new Paint();
-            cropPaint.setColor(0xFFFFFFFF);
-            cropPaint.setStyle(Paint.Style.STROKE);
-            cropPaint.setStrokeWidth(3f);
-
-            // Внешняя область затемнения
-            Paint dimPaint = new Paint();
-            dimPaint.setColor(0x88000000);
-            dimPaint.setStyle(Paint.Style.FILL);
-
-            // Рисуем затемнение вокруг области обрезки
-            // Верхняя область
-            canvas.drawRect(imageBounds.left, imageBounds.top, imageBounds.right, cropRect.top, dimPaint);
-            // Левая область
-            canvas.drawRect(imageBounds.left, cropRect.top, cropRect.left, cropRect.bottom, dimPaint);
-            // Правая область
-            canvas.drawRect(cropRect.right, cropRect.top, imageBounds.right, cropRect.bottom, dimPaint);
-            // Нижняя область
-            canvas.drawRect(imageBounds.left, cropRect.bottom, imageBounds.right, imageBounds.bottom, dimPaint);
-
-            // Рамка области обрезки
-            canvas.drawRect(cropRect, cropPaint);
-
-            // Рисуем маркеры углов и сторон
-            cropPaint.setStyle(Paint.Style.FILL);
-            cropPaint.setColor(0xFFFFFFFF);
-            cropPaint.setStrokeWidth(2f);
-
-            // Угловые маркеры
-            drawCropHandle(canvas, cropRect.left, cropRect.top, cropPaint);      // Левый верхний
-            drawCropHandle(canvas, cropRect.right, cropRect.top, cropPaint);     // Правый верхний
-            drawCropHandle(canvas, cropRect.left, cropRect.bottom, cropPaint);   // Левый нижний
-            drawCropHandle(canvas, cropRect.right, cropRect.bottom, cropPaint);  // Правый нижний
-
-            // Маркеры сторон
-            drawCropHandle(canvas, cropRect.centerX(), cropRect.top, cropPaint);      // Верхний центр
-            drawCropHandle(canvas, cropRect.centerX(), cropRect.bottom, cropPaint);   // Нижний центр
-            drawCropHandle(canvas, cropRect.left, cropRect.centerY(), cropPaint);     // Левый центр
-            drawCropHandle(canvas, cropRect.right, cropRect.centerY(), cropPaint);    // Правый центр
-        }
-    }
-
-    private void drawCropHandle(Canvas canvas, float x, float y, Paint paint) {
-        canvas.drawCircle(x, y, cropHandleRadius, paint);
-        Paint strokePaint = new Paint(paint);
-        strokePaint.setStyle(Paint.Style.STROKE);
-        strokePaint.setColor(0xFF000000);
-        strokePaint.setStrokeWidth(2f);
-        canvas.drawCircle(x, y, cropHandleRadius, strokePaint);
+            cropOverlayRenderer.draw(canvas, imageBounds, cropRect);
+        }
+    }
+
+    // При уменьшении рисуется подходящий уровень пирамиды: меньше чтения памяти и нет алиасинга
+    private void drawWorkingBitmap(Canvas canvas) {
+        if (mipmapPyramid == null) {
+            mipmapPyramid = new MipmapPyramid(workingBitmap);
+            mipmapPyramid.setOnLevelReadyListener(this::invalidate);
+        }
+        mipmapPyramid.draw(canvas, imageMatrix, getCurrentScale());
+    }
+
+    // Пирамида строится заново после любого изменения растра рабочей битмапы
+    private void releaseMipmapPyramid() {
+        if (mipmapPyramid != null) {
+            mipmapPyramid.release();
+            mipmapPyramid = null;
+        }
+    }
+
+    // Поверх рабочей битмапы рисуются тайлы полного разрешения, если экран показывает больше деталей,
+    // чем есть в рабочей битмапе
+    private void drawImageTiles(Canvas canvas) {
+        imageMatrix.getValues(matrixValues);
+        float screenPerWorkingPixel = matrixValues[Matrix.MSCALE_X];
+        if (screenPerWorkingPixel <= 1f) return;
+
+        float fullPerWorkingX = (float) tiledImageSource.getWidth() / workingBitmap.getWidth();
+        float fullPerWorkingY = (float) tiledImageSource.getHeight() / workingBitmap.getHeight();
+
+        tileMatrix.set(imageMatrix);
+        tileMatrix.preScale(1f / fullPerWorkingX, 1f / fullPerWorkingY);
+
+        // Видимая часть экрана в координатах полного изображения
+        visibleTileRect.set(0, 0, getWidth(), getHeight());
+        inverseMatrix.mapRect(visibleTileRect);
+        visibleTileRect.left *= fullPerWorkingX;
+        visibleTileRect.right *= fullPerWorkingX;
+        visibleTileRect.top *= fullPerWorkingY;
+        visibleTileRect.bottom *= fullPerWorkingY;
+
+        tiledImageSource.draw(canvas, tileMatrix, visibleTileRect, screenPerWorkingPixel / fullPerWorkingX);
     }
 
     @Override
     public boolean onTouchEvent(MotionEvent event) {
+        // Пока показано только превью или идет экспорт, редактирование недоступно
+        if (workingBitmap == null || isEditingLocked()) {
+            return super.onTouchEvent(event);
+        }
+
         float x = event.getX();
         float y = event.getY();
 
-        // Обновляем обратную матрицу трансформации
-        updateInverseMatrix();
-
         if (cropMode) {
+            boolean hadCropRect = cropRect != null;
+            if (hadCropRect) {
+                previousCropRect.set(cropRect);
+            }
+
             switch (event.getAction()) {
                 case MotionEvent.ACTION_DOWN:
                     lastTouchX = x;
@@ -175,6 +371,7 @@ public class EditorView extends View {
                     if (cropRect == null) {
                         // Если нет прямоугольника обрезки, создаем новый
                         initializeCropRect(x, y);
+                        invalidateCropChange(false);
                         return true;
                     } else {
                         // Проверяем, нажат ли один из маркеров или внутри области
@@ -189,6 +386,7 @@ public class EditorView extends View {
                         }
                         // Создаем новую область обрезки
                         initializeCropRect(x, y);
+                        invalidateCropChange(true);
                         return true;
                     }
 
@@ -196,19 +394,19 @@ public class EditorView extends View {
                     if (selectedCropHandle >= 0) {
                         // Перемещаем маркер
                         moveCropHandle(selectedCropHandle, x, y);
-                        invalidate();
+                        invalidateCropChange(hadCropRect);
                         return true;
                     } else if (isDraggingCropArea) {
                         // Перемещаем всю область обрезки
                         moveCropArea(x - lastTouchX, y - lastTouchY);
                         lastTouchX = x;
                         lastTouchY = y;
-                        invalidate();
+                        invalidateCropChange(hadCropRect);
                         return true;
                     } else if (cropRect != null) {
                         // Изменяем размер области обрезки с начальной точки
                         updateCropRectSize(x, y);
-                        invalidate();
+                        invalidateCropChange(hadCropRect);
                         return true;
                     }
                     break;
@@ -219,34 +417,34 @@ public class EditorView extends View {
                     selectedCropHandle = -1;
                     isDraggingCropArea = false;
                     normalizeCropRect();
-                    invalidate();
+                    invalidateCropChange(hadCropRect);
                     return true;
             }
         } else {
-            // Преобразуем координаты касания в координаты на изображении
-            float[] points = {x, y};
-            inverseMatrix.mapPoints(points);
-            float bitmapX = points[0];
-            float bitmapY = points[1];
-
-            // Ограничиваем координаты внутри изображения
-            if (workingBitmap != null) {
-                bitmapX = Math.max(0, Math.min(bitmapX, workingBitmap.getWidth()));
-                bitmapY = Math.max(0, Math.min(bitmapY, workingBitmap.getHeight()));
+            if (handleViewportGesture(event)) {
+                return true;
             }
-
             switch (event.getAction()) {
                 case MotionEvent.ACTION_DOWN:
-                    handleDrawStart(bitmapX, bitmapY);
-                    invalidate();
+                    mapTouchPoints(event, false);
+                    handleDrawStart(touchPoints[0], touchPoints[1]);
+                    if (currentDrawingObject != null) {
+                        currentDrawingObject.getBounds(objectBounds);
+                        invalidateImageRegion(objectBounds);
+                    }
                     return true;
                 case MotionEvent.ACTION_MOVE:
-                    handleDrawMove(bitmapX, bitmapY);
-                    invalidate();
+                    // Все накопленные сэмплы обрабатываются одной пачкой и одной перерисовкой
+                    int count = mapTouchPoints(event, true);
+                    handleDrawMove(touchPoints, count);
                     return true;
                 case MotionEvent.ACTION_UP:
-                    handleDrawEnd();
-                    invalidate();
+                    if (currentDrawingObject != null) {
+                        finishStroke();
+                        currentDrawingObject.getBounds(objectBounds);
+                        handleDrawEnd();
+                        invalidateImageRegion(objectBounds);
+                    }
                     return true;
             }
         }
@@ -254,6 +452,88 @@ public class EditorView extends View {
         return super.onTouchEvent(event);
     }
 
+    // Щипок масштабирует и сдвигает вид, без инструмента рисования вид сдвигается и одним пальцем.
+    // Второй палец во время рисования отменяет незавершенный объект
+    private boolean handleViewportGesture(MotionEvent event) {
+        int action = event.getActionMasked();
+        if (action == MotionEvent.ACTION_DOWN) {
+            viewportGesture = currentDrawingMode == DrawingMode.NONE;
+        } else if (action == MotionEvent.ACTION_POINTER_DOWN && !viewportGesture) {
+            viewportGesture = true;
+            cancelCurrentDrawing();
+        }
+        // Детекторы получают всю серию касаний, чтобы видеть ее начало, даже если вид еще не двигается
+        scaleDetector.onTouchEvent(event);
+        panDetector.onTouchEvent(event);
+        return viewportGesture;
+    }
+
+    private void cancelCurrentDrawing() {
+        if (currentDrawingObject != null) {
+            currentDrawingObject.getBounds(objectBounds);
+            currentDrawingObject = null;
+            invalidateImageRegion(objectBounds);
+        }
+    }
+
+    private void startFling(float velocityX, float velocityY) {
+        mapImageBounds();
+        int startX = Math.round(imageBounds.left);
+        int startY = Math.round(imageBounds.top);
+        // Диапазон положения левого верхнего угла, при котором изображение не отходит от краев экрана
+        boolean wider = imageBounds.width() > getWidth();
+        boolean taller = imageBounds.height() > getHeight();
+        flingScroller.fling(startX, startY, Math.round(velocityX), Math.round(velocityY),
+                wider ? Math.round(getWidth() - imageBounds.width()) : startX, wider ? 0 : startX,
+                taller ? Math.round(getHeight() - imageBounds.height()) : startY, taller ? 0 : startY);
+        postInvalidateOnAnimation();
+    }
+
+    @Override
+    public void computeScroll() {
+        if (workingBitmap != null && flingScroller.computeScrollOffset()) {
+            mapImageBounds();
+            imageMatrix.postTranslate(flingScroller.getCurrX() - imageBounds.left,
+                    flingScroller.getCurrY() - imageBounds.top);
+            onViewportChanged();
+        }
+    }
+
+    private float getCurrentScale() {
+        imageMatrix.getValues(matrixValues);
+        return matrixValues[Matrix.MSCALE_X];
+    }
+
+    private float getMaxScale() {
+        return Math.max(fitScale, MAX_ZOOM);
+    }
+
+    private void onViewportChanged() {
+        constrainViewport();
+        updateInverseMatrix();
+        invalidate();
+    }
+
+    // Изображение меньше экрана центрируется, большее не оставляет пустых полей у краев
+    private void constrainViewport() {
+        mapImageBounds();
+        imageMatrix.postTranslate(constrainOffset(imageBounds.left, imageBounds.right, getWidth()),
+                constrainOffset(imageBounds.top, imageBounds.bottom, getHeight()));
+    }
+
+    private static float constrainOffset(float start, float end, int viewSize) {
+        float size = end - start;
+        if (size <= viewSize) return (viewSize - size) / 2f - start;
+        if (start > 0) return -start;
+        if (end < viewSize) return viewSize - end;
+        return 0;
+    }
+
+    private void mapImageBounds() {
+        imageBounds.set(0, 0, workingBitmap.getWidth(), workingBitmap.getHeight());
+        imageMatrix.mapRect(imageBounds);
+    }
+
     private boolean isTouchInsideCropRect(float x, float y) {
         if (cropRect == null) return false;
         return cropRect.contains(x, y);
@@ -349,7 +629,7 @@ public class EditorView extends View {
         }
     }
 
-    // Обновление обратной матрицы трансформации
+    // Обновление обратной матрицы трансформации, вызывается при каждом изменении imageMatrix
     private void updateInverseMatrix() {
         imageMatrix.invert(inverseMatrix);
     }
@@ -357,35 +637,14 @@ public class EditorView extends View {
     // Определение, какой маркер обрезки находится под указанной точкой
     private int getCropHandleUnderPoint(float x, float y) {
         if (cropRect == null) return -1;
-
-        // Проверяем расстояние от точки до каждого маркера
-        float[] handlePoints = {
-                cropRect.left, cropRect.top,           // 0: левый верхний
-                cropRect.right, cropRect.top,          // 1: правый верхний
-                cropRect.left, cropRect.bottom,        // 2: левый нижний
-                cropRect.right, cropRect.bottom,       // 3: правый нижний
-                cropRect.centerX(), cropRect.top,      // 4: верх центр
-                cropRect.centerX(), cropRect.bottom,   // 5: низ центр
-                cropRect.left, cropRect.centerY(),     // 6: левый центр
-                cropRect.right, cropRect.centerY()     // 7: правый центр
-        };
-
-        for (int i = 0; i < 8; i++) {
-            float handleX = handlePoints[i * 2];
-            float handleY = handlePoints[i * 2 + 1];
-            float distance = (float) Math.sqrt(Math.pow(x - handleX, 2) + Math.pow(y - handleY, 2));
-            if (distance <= cropHandleRadius * 1.5) {
-                return i;
-            }
-        }
-
-        return -1;
+        return cropOverlayRenderer.findHandleAt(cropRect, x, y);
     }
 
     private void handleDrawStart(float bitmapX, float bitmapY) {
         switch (currentDrawingMode) {
             case LINE:
                 currentDrawingObject = new DrawingLine(bitmapX, bitmapY, brushColor, brushSize);
+                strokeFilter.reset(bitmapX, bitmapY, STROKE_MIN_DISTANCE_PX / getCurrentScale());
                 break;
             case RECTANGLE:
                 currentDrawingObject = new DrawingRectangle(bitmapX, bitmapY, brushColor, brushSize);
@@ -401,31 +660,153 @@ public class EditorView extends View {
         }
     }
 
-    private void handleDrawMove(float bitmapX, float bitmapY) {
-        if (currentDrawingObject != null) {
-            // Ограничиваем координаты внутри битмапы
-            if (workingBitmap != null) {
-                bitmapX = Math.max(0, Math.min(bitmapX, workingBitmap.getWidth()));
-                bitmapY = Math.max(0, Math.min(bitmapY, workingBitmap.getHeight()));
+    // Переводит сэмплы события (исторические и текущий) в координаты изображения одним mapPoints
+    private int mapTouchPoints(MotionEvent event, boolean withHistory) {
+        int historySize = withHistory ? event.getHistorySize() : 0;
+        int count = historySize + 1;
+        if (touchPoints.length < count * 2) {
+            touchPoints = new float[count * 4];
+        }
+
+        for (int i = 0; i < historySize; i++) {
+            touchPoints[i * 2] = event.getHistoricalX(i);
+            touchPoints[i * 2 + 1] = event.getHistoricalY(i);
+        }
+        touchPoints[historySize * 2] = event.getX();
+        touchPoints[historySize * 2 + 1] = event.getY();
+
+        inverseMatrix.mapPoints(touchPoints, 0, touchPoints, 0, count);
+
+        // Ограничиваем координаты внутри изображения
+        if (workingBitmap != null) {
+            int width = workingBitmap.getWidth();
+            int height = workingBitmap.getHeight();
+            for (int i = 0; i < count; i++) {
+                touchPoints[i * 2] = Math.max(0, Math.min(touchPoints[i * 2], width));
+                touchPoints[i * 2 + 1] = Math.max(0, Math.min(touchPoints[i * 2 + 1], height));
             }
+        }
+        return count;
+    }
 
+    private void handleDrawMove(float[] bitmapPoints, int count) {
+        if (currentDrawingObject != null) {
             if (currentDrawingObject instanceof DrawingLine) {
-                ((DrawingLine) currentDrawingObject).addPoint(bitmapX, bitmapY);
+                DrawingLine line = (DrawingLine) currentDrawingObject;
+                count = strokeFilter.filter(bitmapPoints, count);
+                if (count == 0) return;
+                // Перерисовываем только новые сегменты: сглаженный хвост начинается у предпоследней точки
+                objectBounds.set(line.getEndX(), line.getEndY(), line.getEndX(), line.getEndY());
+                if (line.getPointCount() > 1) {
+                    int previous = line.getPointCount() - 2;
+                    objectBounds.union(line.getPointX(previous), line.getPointY(previous));
+                }
+                for (int i = 0; i < count; i++) {
+                    objectBounds.union(bitmapPoints[i * 2], bitmapPoints[i * 2 + 1]);
+                }
+                float halfStroke = line.getStrokeWidth() / 2;
+                objectBounds.inset(-halfStroke, -halfStroke);
+
+                line.addPoints(bitmapPoints, count);
             } else {
-                currentDrawingObject.updateEndPoint(bitmapX, bitmapY);
+                // Фигурам нужна только последняя точка; перерисовываем старые и новые границы
+                currentDrawingObject.getBounds(objectBounds);
+                currentDrawingObject.updateEndPoint(bitmapPoints[(count - 1) * 2], bitmapPoints[(count - 1) * 2 + 1]);
+                currentDrawingObject.getBounds(dirtyBounds);
+                objectBounds.union(dirtyBounds);
             }
+            invalidateImageRegion(objectBounds);
+        }
+    }
+
+    // Штрих заканчивается последним сэмплом и прореживается перед фиксацией в истории
+    private void finishStroke() {
+        if (!(currentDrawingObject instanceof DrawingLine)) return;
+        DrawingLine line = (DrawingLine) currentDrawingObject;
+        if (strokeFilter.finish(touchPoints)) {
+            line.addPoint(touchPoints[0], touchPoints[1]);
+        }
+        line.simplify(STROKE_TOLERANCE_PX / getCurrentScale());
+    }
+
+    // Перерисовка области, заданной в координатах изображения
+    private void invalidateImageRegion(RectF bitmapRegion) {
+        dirtyBounds.set(bitmapRegion);
+        imageMatrix.mapRect(dirtyBounds);
+        invalidateScreenRegion(dirtyBounds, DIRTY_MARGIN);
+    }
+
+    // Перерисовка старого и нового положения рамки обрезки вместе с маркерами
+    private void invalidateCropChange(boolean hadCropRect) {
+        if (!hadCropRect || cropRect == null) {
+            // Затемнение появилось или исчезло целиком
+            invalidate();
+            return;
         }
+        dirtyBounds.set(
+                Math.min(Math.min(previousCropRect.left, previousCropRect.right), Math.min(cropRect.left, cropRect.right)),
+                Math.min(Math.min(previousCropRect.top, previousCropRect.bottom), Math.min(cropRect.top, cropRect.bottom)),
+                Math.max(Math.max(previousCropRect.left, previousCropRect.right), Math.max(cropRect.left, cropRect.right)),
+                Math.max(Math.max(previousCropRect.top, previousCropRect.bottom), Math.max(cropRect.top, cropRect.bottom)));
+        invalidateScreenRegion(dirtyBounds, cropHandleRadius + DIRTY_MARGIN + 2);
+    }
+
+    private void invalidateScreenRegion(RectF screenRegion, float padding) {
+        screenRegion.inset(-padding, -padding);
+        screenRegion.roundOut(dirtyRect);
+        invalidate(dirtyRect);
     }
 
     private void handleDrawEnd() {
         if (currentDrawingObject != null) {
             constrainToImageBounds(currentDrawingObject);
-            drawingObjects.add(currentDrawingObject);
             historyManager.executeCommand(new DrawCommand(drawingObjects, currentDrawingObject));
+            if (drawingLayerRenderer != null) {
+                drawingLayerRenderer.onObjectAppended(currentDrawingObject);
+            }
             currentDrawingObject = null;
         }
     }
 
+    // Видимая на экране часть изображения в его координатах
+    private void computeVisibleImageRect(Rect out) {
+        visibleArea.set(0, 0, getWidth(), getHeight());
+        inverseMatrix.mapRect(visibleArea);
+        visibleArea.roundOut(out);
+        if (!out.intersect(0, 0, workingBitmap.getWidth(), workingBitmap.getHeight())) {
+            out.setEmpty();
+        }
+    }
+
+    // Список отображения с аппаратным рендерером доступен с API 29, иначе слой рисуется в битмапу
+    private DrawingLayerRenderer getDrawingLayerRenderer(Canvas canvas) {
+        if (drawingLayerRenderer == null) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q && canvas.isHardwareAccelerated()) {
+                drawingLayerRenderer = new DisplayListLayerRenderer(drawingObjects, renderMetrics);
+            } else {
+                drawingLayerRenderer = new BitmapLayerRenderer(drawingObjects, renderMetrics);
+            }
+        }
+        return drawingLayerRenderer;
+    }
+
+    public RenderMetrics getRenderMetrics() {
+        return renderMetrics;
+    }
+
+    private void invalidateDrawingLayer() {
+        if (drawingLayerRenderer != null) {
+            drawingLayerRenderer.invalidate();
+        }
+    }
+
+    private void releaseDrawingLayer() {
+        if (drawingLayerRenderer != null) {
+            drawingLayerRenderer.release();
+            drawingLayerRenderer = null;
+        }
+    }
+
     // Проверка и обновление границ рисуемых объектов
     private void constrainToImageBounds(DrawingObject object) {
         if (workingBitmap == null) return;
@@ -441,6 +822,7 @@ public class EditorView extends View {
     }
 
     public void applyCrop() {
+        if (isEditingLocked()) return;
         if (cropMode && cropRect != null && workingBitmap != null) {
             // Преобразуем координаты cropRect из экранного пространства в пространство изображения
             RectF bitmapCropRect = new RectF();
@@ -456,35 +838,12 @@ public class EditorView extends View {
             int height = Math.min(workingBitmap.getHeight() - y, Math.round(bitmapCropRect.height()));
 
             if (width > 0 && height > 0) {
-                // Сначала отрисовываем все объекты на рабочую битмапу
-                Canvas canvas = new Canvas(workingBitmap);
-                for (DrawingObject obj : drawingObjects) {
-                    obj.draw(canvas);
-                }
-
                 try {
-                    // Создаем обрезанную битмапу
-                    Bitmap croppedBitmap = Bitmap.createBitmap(workingBitmap, x, y, width, height);
-
-                    // Заменяем рабочую битмапу на обрезанную
-                    workingBitmap = croppedBitmap;
-                    bitmapCanvas = new Canvas(workingBitmap);
-
-                    // Очищаем списки объектов и историю
-                    drawingObjects.clear();
-                    historyManager.clear();
-
-                    // Сбрасываем матрицу и подгоняем изображение к экрану
-                    imageMatrix.reset();
-                    fitImageToView();
-
-                    // Сбрасываем режим обрезки
-                    cropMode = false;
-                    cropRect = null;
-
-                    invalidate();
-                } catch (Exception e) {
-                    Log.e(TAG, "Ошибка при обрезке изображения", e);
+                    // Рисунки не впекаются: команда сдвигает их вместе с областью обрезки
+                    historyManager.executeCommand(new CropCommand(imageHost, drawingObjects,
+                            new Rect(x, y, x + width, y + height)));
+                } catch (OutOfMemoryError e) {
+                    Log.e(TAG, "Ошибка при обрезке изображения: не хватает памяти", e);
                 }
             }
         }
@@ -495,23 +854,104 @@ public class EditorView extends View {
         invalidate();
     }
 
+    // Показывает превью в размере будущей рабочей битмапы targetWidth x targetHeight
+    public void setPreviewBitmap(Bitmap preview, int targetWidth, int targetHeight) {
+        if (workingBitmap != null || preview == null) return;
+        previewBitmap = preview;
+        previewTargetWidth = targetWidth;
+        previewTargetHeight = targetHeight;
+        fitImageToView();
+        invalidate();
+    }
+
     public void setImageBitmap(Bitmap bitmap) {
         if (bitmap != null) {
-            originalBitmap = bitmap;
-            workingBitmap = bitmap.copy(Bitmap.Config.ARGB_8888, true);
-            bitmapCanvas = new Canvas(workingBitmap);
+            if (session == null) {
+                throw new IllegalStateException("Сессия редактора не подключена: вызовите attachSession");
+            }
+            if (previewBitmap != null) {
+                previewBitmap.recycle();
+                previewBitmap = null;
+            }
+            releaseMipmapPyramid();
+            if (workingBitmap != null) {
+                BitmapPool.getInstance().put(workingBitmap);
+            }
+            // Изменяемая ARGB_8888 битмапа от загрузчика используется как есть, без копии
+            if (bitmap.isMutable() && bitmap.getConfig() == Bitmap.Config.ARGB_8888) {
+                workingBitmap = bitmap;
+            } else {
+                workingBitmap = bitmap.copy(Bitmap.Config.ARGB_8888, true);
+                bitmap.recycle();
+            }
+            baseImageWidth = workingBitmap.getWidth();
+            baseImageHeight = workingBitmap.getHeight();
+            drawingObjects.resetImageTransform();
+            releaseTiledImageSource();
+            invalidateDrawingLayer();
             imageMatrix.reset();
+            updateInverseMatrix();
             fitImageToView();
             invalidate();
         }
     }
 
+    // Подключает тайлы исходного файла для изображения, уже показанного в setImageBitmap.
+    // Они лишь уточняют картинку при увеличении: правки и экспорт идут по рабочей битмапе
+    public void setTiledImageSource(TiledImageSource source) {
+        releaseTiledImageSource();
+        tiledImageSource = source;
+        if (source != null) {
+            source.setOnTileLoadedListener(this::invalidate);
+        }
+        invalidate();
+    }
+
+    // После обрезки, поворота или отражения рабочая битмапа больше не совпадает с исходным файлом
+    private void releaseTiledImageSource() {
+        if (tiledImageSource != null) {
+            tiledImageSource.release();
+            tiledImageSource = null;
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        if (session == null || session.isReleased()) {
+            releaseTiledImageSource();
+        } else {
+            detachSession();
+        }
+        releaseMipmapPyramid();
+        releaseDrawingLayer();
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        fitImageToView();
+    }
+
     public void fitImageToView() {
-        if (workingBitmap == null || getWidth() == 0 || getHeight() == 0) return;
+        if (getWidth() == 0 || getHeight() == 0) return;
+
+        int imageWidth;
+        int imageHeight;
+        if (workingBitmap != null) {
+            imageWidth = workingBitmap.getWidth();
+            imageHeight = workingBitmap.getHeight();
+        } else if (previewBitmap != null) {
+            imageWidth = previewTargetWidth;
+            imageHeight = previewTargetHeight;
+        } else {
+            return;
+        }
 
         imageMatrix.reset();
-        float scaleX = (float) getWidth() / workingBitmap.getWidth();
-        float scaleY = (float) getHeight() / workingBitmap.getHeight();
+        flingScroller.forceFinished(true);
+        float scaleX = (float) getWidth() / imageWidth;
+        float scaleY = (float) getHeight() / imageHeight;
         float scale = Math.min(scaleX, scaleY);
 
         // Ограничиваем масштаб, чтобы изображение не увеличивалось больше 100%
@@ -519,18 +959,32 @@ public class EditorView extends View {
             scale = 1.0f;
         }
 
+        fitScale = scale;
         imageMatrix.setScale(scale, scale);
-        float dx = (getWidth() - workingBitmap.getWidth() * scale) / 2f;
-        float dy = (getHeight() - workingBitmap.getHeight() * scale) / 2f;
+        float dx = (getWidth() - imageWidth * scale) / 2f;
+        float dy = (getHeight() - imageHeight * scale) / 2f;
         imageMatrix.postTranslate(dx, dy);
 
         // Обновляем обратную матрицу
         updateInverseMatrix();
 
+        if (restoredCropRect != null && workingBitmap != null) {
+            cropRect = restoredCropRect;
+            imageMatrix.mapRect(cropRect);
+            restoredCropRect = null;
+        }
+
         // Обновляем границы изображения
-        imageBounds.set(0, 0, workingBitmap.getWidth(), workingBitmap.getHeight());
+        imageBounds.set(0, 0, imageWidth, imageHeight);
         imageMatrix.mapRect(imageBounds);
 
+        // Превью растягивается до размеров будущей рабочей битмапы
+        if (workingBitmap == null) {
+            previewMatrix.set(imageMatrix);
+            previewMatrix.preScale((float) imageWidth / previewBitmap.getWidth(),
+                    (float) imageHeight / previewBitmap.getHeight());
+        }
+
         invalidate();
     }
 
@@ -551,83 +1005,38 @@ public class EditorView extends View {
     }
 
     public void rotateImage(int degrees) {
-        if (workingBitmap == null) return;
-
-        // Применяем все текущие рисунки к изображению перед поворотом
-        applyDrawingsToCanvas();
-
-        // Создаем матрицу поворота с центром в середине изображения
-        Matrix rotateMatrix = new Matrix();
-        rotateMatrix.setRotate(degrees, workingBitmap.getWidth() / 2f, workingBitmap.getHeight() / 2f);
+        if (workingBitmap == null || isEditingLocked()) return;
+        if (degrees % 90 != 0) {
+            Log.w(TAG, "Поддерживается только поворот на угол, кратный 90 градусам: " + degrees);
+            return;
+        }
 
         try {
-            // Создаем повернутую битмапу
-            Bitmap rotatedBitmap = Bitmap.createBitmap(
-                    workingBitmap, 0, 0, workingBitmap.getWidth(), workingBitmap.getHeight(), rotateMatrix, true);
-
-            // Обновляем рабочую битмапу и канвас
-            if (rotatedBitmap != workingBitmap) {
-                workingBitmap.recycle();
-                workingBitmap = rotatedBitmap;
-                bitmapCanvas = new Canvas(workingBitmap);
-            }
-
-            // Очищаем список объектов рисования и историю
-            drawingObjects.clear();
-            historyManager.clear();
-
-            // Обновляем отображение
-            fitImageToView();
-            invalidate();
+            historyManager.executeCommand(new RotateCommand(imageHost, drawingObjects, degrees));
         } catch (OutOfMemoryError e) {
             Log.e(TAG, "Ошибка при повороте изображения: не хватает памяти", e);
         }
     }
 
     public void flipImage() {
-        if (workingBitmap == null) return;
-
-        // Применяем все текущие рисунки к изображению перед отражением
-        applyDrawingsToCanvas();
+        if (workingBitmap == null || isEditingLocked()) return;
 
-        // Создаем матрицу отражения
-        Matrix flipMatrix = new Matrix();
-        flipMatrix.setScale(-1, 1);
-        flipMatrix.postTranslate(workingBitmap.getWidth(), 0);
-
-        try {
-            // Создаем отраженную битмапу
-            Bitmap flippedBitmap = Bitmap.createBitmap(
-                    workingBitmap, 0, 0, workingBitmap.getWidth(), workingBitmap.getHeight(), flipMatrix, true);
-
-            // Обновляем рабочую битмапу и канвас
-            if (flippedBitmap != workingBitmap) {
-                workingBitmap.recycle();
-                workingBitmap = flippedBitmap;
-                bitmapCanvas = new Canvas(workingBitmap);
-            }
-
-            // Очищаем список объектов рисования и историю
-            drawingObjects.clear();
-            historyManager.clear();
+        historyManager.executeCommand(new FlipCommand(imageHost, drawingObjects));
+    }
 
-            // Обновляем отображение
-            fitImageToView();
-            invalidate();
-        } catch (OutOfMemoryError e) {
-            Log.e(TAG, "Ошибка при отражении изображения: не хватает памяти", e);
-        }
+    // Пирамида строится из рабочей битмапы в фоне; release дожидается выхода построителя из drawBitmap
+    void beforeImageChange() {
+        releaseMipmapPyramid();
     }
 
-    // Метод для применения всех текущих рисунков к канвасу
-    private void applyDrawingsToCanvas() {
-        if (workingBitmap != null && !drawingObjects.isEmpty()) {
-            for (DrawingObject obj : drawingObjects) {
-                obj.draw(bitmapCanvas);
-            }
-            drawingObjects.clear();
-            historyManager.clear();
-        }
+    // Вызывается геометрическими командами после замены или изменения рабочей битмапы
+    void onImageReplaced(Bitmap image) {
+        workingBitmap = image;
+        releaseMipmapPyramid();
+        releaseTiledImageSource();
+        invalidateDrawingLayer();
+        fitImageToView();
+        invalidate();
     }
 
     public void setBrushSize(int size) {
@@ -647,36 +1056,104 @@ public class EditorView extends View {
     }
 
     public void undo() {
+        if (isEditingLocked()) return;
         historyManager.undo();
+        invalidateDrawingLayer();
         invalidate();
     }
 
     public void redo() {
+        if (isEditingLocked()) return;
         historyManager.redo();
+        invalidateDrawingLayer();
         invalidate();
     }
 
-    public Bitmap getFinalBitmap() {
-        if (workingBitmap == null) return null;
+    // Рабочая битмапа без наложенных рисунков; рисунки отдаются отдельно через getDrawingObjects
+    public Bitmap getWorkingBitmap() {
+        return workingBitmap;
+    }
 
-        try {
-            // Создаем копию текущего изображения
-            Bitmap resultBitmap = Bitmap.createBitmap(
-                    workingBitmap.getWidth(), workingBitmap.getHeight(), Bitmap.Config.ARGB_8888);
-            Canvas canvas = new Canvas(resultBitmap);
+    public List<DrawingObject> getDrawingObjects() {
+        return Collections.unmodifiableList(drawingObjects);
+    }
 
-            // Рисуем текущее изображение
-            canvas.drawBitmap(workingBitmap, 0, 0, null);
+    // Журнал автосохранения, в который история дописывает все последующие правки
+    public void setCommandJournal(CommandJournal journal) {
+        historyManager.setJournal(journal);
+    }
 
-            // Рисуем все объекты поверх
-            for (DrawingObject obj : drawingObjects) {
-                obj.draw(canvas);
+    // Повторяет правки прерванной сессии поверх загруженного изображения
+    public void replaySession(CommandJournal.Replay replay) {
+        if (workingBitmap == null) return;
+        cancelCurrentDrawing();
+        replay.applyTo(imageHost, drawingObjects, historyManager);
+        invalidateDrawingLayer();
+        invalidate();
+    }
+
+    // Снимок сессии для файла проекта; baseImageUri - изображение, переданное в setImageBitmap
+    public ProjectFile createProjectFile(String baseImageUri) {
+        if (workingBitmap == null) return null;
+        float[] transform = new float[9];
+        drawingObjects.getImageTransform(transform);
+        return new ProjectFile(baseImageUri, baseImageWidth, baseImageHeight,
+                workingBitmap.getWidth(), workingBitmap.getHeight(), transform, new ArrayList<>(drawingObjects));
+    }
+
+    // Восстанавливает сессию из проекта поверх только что загруженного исходного изображения.
+    // История правок не сохраняется в проекте, поэтому после открытия она начинается заново
+    public boolean applyProject(ProjectFile project) {
+        if (workingBitmap == null || project.getBaseWidth() <= 0) return false;
+
+        // Исходное изображение могло декодироваться в другом размере (другое устройство, другой лимит памяти)
+        float scale = (float) workingBitmap.getWidth() / project.getBaseWidth();
+        float[] values = project.getImageTransform();
+        // Повороты, отражения и обрезки ортогональны: округление убирает накопленную погрешность float
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Math.round(values[i]);
+        }
+        // Та же геометрия в масштабе новой битмапы: S * M * S^-1 меняет только сдвиг
+        values[Matrix.MTRANS_X] = Math.round(values[Matrix.MTRANS_X] * scale);
+        values[Matrix.MTRANS_Y] = Math.round(values[Matrix.MTRANS_Y] * scale);
+        Matrix transform = new Matrix();
+        transform.setValues(values);
+
+        cancelCurrentDrawing();
+        historyManager.clear();
+        drawingObjects.clear();
+
+        if (!transform.isIdentity()) {
+            int width = Math.max(1, Math.round(project.getImageWidth() * scale));
+            int height = Math.max(1, Math.round(project.getImageHeight() * scale));
+            Bitmap image = workingBitmap;
+            Bitmap edited;
+            try {
+                edited = BitmapPool.getInstance().get(width, height, Bitmap.Config.ARGB_8888);
+            } catch (OutOfMemoryError e) {
+                Log.e(TAG, "Не хватает памяти для восстановления проекта", e);
+                return false;
             }
+            new Canvas(edited).drawBitmap(image, transform, null);
+            onImageReplaced(edited);
+            BitmapPool.getInstance().put(image);
+        }
 
-            return resultBitmap;
-        } catch (OutOfMemoryError e) {
-            Log.e(TAG, "Ошибка при создании финального изображения: не хватает памяти", e);
-            return null;
+        Matrix objectScale = null;
+        if (scale != 1f) {
+            objectScale = new Matrix();
+            objectScale.setScale(scale, scale);
+        }
+        for (DrawingObject object : project.getObjects()) {
+            if (objectScale != null) {
+                object.transform(objectScale);
+            }
+            drawingObjects.append(object);
         }
+        drawingObjects.setImageTransform(values);
+
+        invalidateDrawingLayer();
+        invalidate();
+        return true;
     }
 }
\ No newline at end of file
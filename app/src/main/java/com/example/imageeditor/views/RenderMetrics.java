@@ -0,0 +1,53 @@
+package com.example.imageeditor.views;
+
+import android.util.Log;
+
+// Отладочные счетчики отрисовки слоя рисования: сколько объектов нарисовано и сколько отсечено
+// как невидимые при последней перестройке или записи слоя
+public class RenderMetrics {
+    private static final String TAG = "RenderMetrics";
+
+    private int totalObjects;
+    private int drawnObjects;
+    private int culledObjects;
+    private long layerRebuilds;
+    private long lastRebuildNanos;
+
+    void onLayerRebuilt(int total, int drawn, long nanos) {
+        totalObjects = total;
+        drawnObjects = drawn;
+        culledObjects = total - drawn;
+        lastRebuildNanos = nanos;
+        layerRebuilds++;
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, toString());
+        }
+    }
+
+    public int getTotalObjects() {
+        return totalObjects;
+    }
+
+    public int getDrawnObjects() {
+        return drawnObjects;
+    }
+
+    public int getCulledObjects() {
+        return culledObjects;
+    }
+
+    public long getLayerRebuilds() {
+        return layerRebuilds;
+    }
+
+    public long getLastRebuildNanos() {
+        return lastRebuildNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "перестроек слоя " + layerRebuilds + ", объектов " + totalObjects
+                + ", нарисовано " + drawnObjects + ", отсечено " + culledObjects
+                + ", последняя " + lastRebuildNanos / 1000 + " мкс";
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.imageeditor.history;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class HistoryManagerTest {
+    private static final int PAYLOAD_BYTES = 1000;
+
+    // Команда с данными заданного размера; выполнение добавляет ее номер в журнал
+    private static class PayloadCommand implements SpillableCommand {
+        private final List<Integer> log;
+        private final int id;
+        private byte[] payload;
+
+        PayloadCommand(List<Integer> log, int id) {
+            this.log = log;
+            this.id = id;
+            this.payload = new byte[PAYLOAD_BYTES];
+            payload[0] = (byte) id;
+        }
+
+        @Override
+        public void execute() {
+            assertNotNull("Данные должны быть загружены перед выполнением", payload);
+            log.add(id);
+        }
+
+        @Override
+        public void undo() {
+            assertNotNull("Данные должны быть загружены перед отменой", payload);
+            assertEquals((byte) id, payload[0]);
+            log.remove(log.size() - 1);
+        }
+
+        @Override
+        public long estimateBytes() {
+            return payload != null ? payload.length : 0;
+        }
+
+        @Override
+        public boolean canSpill() {
+            return payload != null;
+        }
+
+        @Override
+        public void spill(DataOutputStream out) throws IOException {
+            out.writeInt(payload.length);
+            out.write(payload);
+        }
+
+        @Override
+        public void releaseSpilled() {
+            payload = null;
+        }
+
+        @Override
+        public void restore(DataInputStream in) throws IOException {
+            payload = new byte[in.readInt()];
+            in.readFully(payload);
+        }
+    }
+
+    private File spillFile;
+    private final List<Integer> log = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        spillFile = File.createTempFile("history", ".bin");
+    }
+
+    @After
+    public void tearDown() {
+        spillFile.delete();
+    }
+
+    @Test
+    public void retainedBytesStayWithinBudget_whenCommandsSpill() {
+        long budget = 10 * PAYLOAD_BYTES;
+        HistoryManager history = new HistoryManager(spillFile, budget);
+
+        for (int i = 0; i < 30; i++) {
+            history.executeCommand(new PayloadCommand(log, i));
+            assertTrue(history.getRetainedBytes() <= budget);
+        }
+        assertEquals(30, history.getUndoCount());
+        assertTrue(history.getSpilledCount() > 0);
+        history.release();
+    }
+
+    @Test
+    public void deepUndoAndRedo_restoreSpilledCommands() {
+        HistoryManager history = new HistoryManager(spillFile, 10 * PAYLOAD_BYTES);
+        for (int i = 0; i < 30; i++) {
+            history.executeCommand(new PayloadCommand(log, i));
+        }
+
+        while (history.canUndo()) {
+            history.undo();
+        }
+        assertTrue(log.isEmpty());
+        assertEquals(30, history.getRedoCount());
+
+        while (history.canRedo()) {
+            history.redo();
+        }
+        assertEquals(30, log.size());
+        for (int i = 0; i < 30; i++) {
+            assertEquals(Integer.valueOf(i), log.get(i));
+        }
+        history.release();
+    }
+
+    @Test
+    public void oldestCommandsEvicted_withoutSpillFile() {
+        HistoryManager history = new HistoryManager(null, 3 * PAYLOAD_BYTES);
+        for (int i = 0; i < 10; i++) {
+            history.executeCommand(new PayloadCommand(log, i));
+        }
+
+        assertTrue(history.getRetainedBytes() <= 3 * PAYLOAD_BYTES);
+        assertTrue(history.getUndoCount() < 10);
+        assertEquals(0, history.getSpilledCount());
+
+        // Отменяются только самые новые команды
+        int undoCount = history.getUndoCount();
+        while (history.canUndo()) {
+            history.undo();
+        }
+        assertEquals(10 - undoCount, log.size());
+    }
+
+    @Test
+    public void newCommandClearsRedoAndSpilledData() {
+        HistoryManager history = new HistoryManager(spillFile, 2 * PAYLOAD_BYTES);
+        for (int i = 0; i < 10; i++) {
+            history.executeCommand(new PayloadCommand(log, i));
+        }
+        while (history.canUndo()) {
+            history.undo();
+        }
+
+        history.executeCommand(new PayloadCommand(log, 100));
+        assertFalse(history.canRedo());
+        assertEquals(0, history.getSpilledCount());
+        assertEquals(1, history.getUndoCount());
+        history.release();
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.imageeditor.history;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static org.junit.Assert.*;
+
+public class RasterSnapshotTest {
+    private static final int TILE_PIXELS = RasterSnapshot.TILE_SIZE * RasterSnapshot.TILE_SIZE;
+
+    private static int[] roundTrip(int[] pixels, int count) throws DataFormatException {
+        byte[] raw = new byte[TILE_PIXELS * 4];
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        Inflater inflater = new Inflater();
+        try {
+            byte[] data = RasterSnapshot.encodeTile(pixels, count, raw, new byte[raw.length + 64], deflater);
+            int[] decoded = new int[TILE_PIXELS];
+            RasterSnapshot.decodeTile(data, decoded, count, raw, inflater);
+            return Arrays.copyOf(decoded, count);
+        } finally {
+            deflater.end();
+            inflater.end();
+        }
+    }
+
+    @Test
+    public void tileCodec_roundTripsRandomPixelsExactly() throws DataFormatException {
+        Random random = new Random(7);
+        int[] pixels = new int[TILE_PIXELS];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt();
+        }
+        assertArrayEquals(pixels, roundTrip(pixels, pixels.length));
+    }
+
+    @Test
+    public void tileCodec_roundTripsPartialEdgeTile() throws DataFormatException {
+        int count = 37 * 200;
+        int[] pixels = new int[TILE_PIXELS];
+        for (int i = 0; i < count; i++) {
+            pixels[i] = 0x80000000 | i;
+        }
+        assertArrayEquals(Arrays.copyOf(pixels, count), roundTrip(pixels, count));
+    }
+
+    @Test
+    public void tileCodec_compressesFlatAreas() {
+        int[] pixels = new int[TILE_PIXELS];
+        Arrays.fill(pixels, 0xFF336699);
+        byte[] raw = new byte[TILE_PIXELS * 4];
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        byte[] data = RasterSnapshot.encodeTile(pixels, pixels.length, raw, new byte[raw.length + 64], deflater);
+        deflater.end();
+
+        // Однотонная плитка должна сжиматься на порядки
+        assertTrue("Размер сжатой плитки: " + data.length, data.length < raw.length / 100);
+    }
+
+    @Test(expected = DataFormatException.class)
+    public void decodeTile_rejectsTruncatedData() throws DataFormatException {
+        int[] pixels = new int[TILE_PIXELS];
+        Random random = new Random(3);
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt();
+        }
+        byte[] raw = new byte[TILE_PIXELS * 4];
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        byte[] data = RasterSnapshot.encodeTile(pixels, pixels.length, raw, new byte[raw.length + 64], deflater);
+        deflater.end();
+
+        Inflater inflater = new Inflater();
+        try {
+            RasterSnapshot.decodeTile(Arrays.copyOf(data, data.length / 2), new int[TILE_PIXELS],
+                    TILE_PIXELS, raw, inflater);
+        } finally {
+            inflater.end();
+        }
+    }
+}
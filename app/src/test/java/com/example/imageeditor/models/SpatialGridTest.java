@@ -0,0 +1,124 @@
+package com.example.imageeditor.models;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SpatialGridTest {
+    private static Object newObject() {
+        return new Object();
+    }
+
+    @Test
+    public void query_returnsOnlyObjectsInNearbyCells() {
+        SpatialGrid<Object> grid = new SpatialGrid<>(100);
+        Object near = newObject();
+        Object far = newObject();
+        grid.insert(near, 10, 10, 50, 50);
+        grid.insert(far, 1000, 1000, 1050, 1050);
+
+        List<Object> result = new ArrayList<>();
+        grid.query(20, 20, 20, 20, result);
+        assertEquals(1, result.size());
+        assertSame(near, result.get(0));
+    }
+
+    @Test
+    public void query_reportsObjectSpanningCellsOnce() {
+        SpatialGrid<Object> grid = new SpatialGrid<>(100);
+        Object wide = newObject();
+        grid.insert(wide, 0, 0, 950, 30);
+        // Еще объекты, чтобы запрос шел по ячейкам, а не полным перебором
+        for (int i = 0; i < 50; i++) {
+            grid.insert(newObject(), i * 100, 500, i * 100 + 10, 510);
+        }
+
+        List<Object> result = new ArrayList<>();
+        grid.query(0, 0, 999, 99, result);
+        assertEquals(1, result.size());
+        assertSame(wide, result.get(0));
+    }
+
+    @Test
+    public void remove_andReinsert_updateCells() {
+        SpatialGrid<Object> grid = new SpatialGrid<>(100);
+        Object object = newObject();
+        grid.insert(object, 10, 10, 20, 20);
+        grid.insert(object, 510, 510, 520, 520);
+        assertEquals(1, grid.size());
+
+        List<Object> result = new ArrayList<>();
+        grid.query(15, 15, 15, 15, result);
+        assertTrue(result.isEmpty());
+        grid.query(515, 515, 515, 515, result);
+        assertEquals(1, result.size());
+
+        grid.remove(object);
+        result.clear();
+        grid.query(515, 515, 515, 515, result);
+        assertTrue(result.isEmpty());
+        assertEquals(0, grid.size());
+    }
+
+    @Test
+    public void query_handlesNegativeCoordinates() {
+        SpatialGrid<Object> grid = new SpatialGrid<>(100);
+        Object object = newObject();
+        grid.insert(object, -250, -250, -210, -210);
+
+        List<Object> result = new ArrayList<>();
+        grid.query(-230, -230, -230, -230, result);
+        assertEquals(1, result.size());
+        result.clear();
+        grid.query(30, 30, 30, 30, result);
+        assertTrue(result.isEmpty());
+    }
+
+    @Test
+    public void query_visitsFewCandidatesInLargeScene() {
+        SpatialGrid<Object> grid = new SpatialGrid<>(100);
+        for (int row = 0; row < 100; row++) {
+            for (int col = 0; col < 100; col++) {
+                grid.insert(newObject(), col * 100 + 10, row * 100 + 10, col * 100 + 40, row * 100 + 40);
+            }
+        }
+
+        List<Object> result = new ArrayList<>();
+        grid.query(5050, 5050, 5050, 5050, result);
+        // Из 10 000 объектов проверяется только содержимое одной ячейки
+        assertEquals(1, result.size());
+    }
+
+    @Test
+    public void remove_manyCells_keepsRemainingObjectsReachable() {
+        SpatialGrid<Object> grid = new SpatialGrid<>(10);
+        Object[] objects = new Object[2000];
+        for (int i = 0; i < objects.length; i++) {
+            objects[i] = newObject();
+            float x = (i % 50) * 10 - 250;
+            float y = (i / 50) * 10 - 200;
+            grid.insert(objects[i], x, y, x + 1, y + 1);
+        }
+        // Удаление каждого третьего объекта освобождает ячейки посреди цепочек пробирования
+        for (int i = 0; i < objects.length; i += 3) {
+            grid.remove(objects[i]);
+        }
+
+        List<Object> result = new ArrayList<>();
+        for (int i = 0; i < objects.length; i++) {
+            result.clear();
+            float x = (i % 50) * 10 - 250;
+            float y = (i / 50) * 10 - 200;
+            grid.query(x, y, x, y, result);
+            if (i % 3 == 0) {
+                assertTrue(result.isEmpty());
+            } else {
+                assertEquals(1, result.size());
+                assertSame(objects[i], result.get(0));
+            }
+        }
+    }
+}
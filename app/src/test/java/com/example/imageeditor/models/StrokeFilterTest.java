@@ -0,0 +1,120 @@
+package com.example.imageeditor.models;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class StrokeFilterTest {
+    private static final float MIN_DISTANCE = 1.5f;
+    private static final float TOLERANCE = 0.5f;
+
+    // Фильтр и прореживание как при рисовании: сэмплы приходят пачками по 4
+    private static float[] process(float[] samples, int count, int[] outCount) {
+        StrokeFilter filter = new StrokeFilter();
+        filter.reset(samples[0], samples[1], MIN_DISTANCE);
+        float[] stroke = new float[count * 2];
+        stroke[0] = samples[0];
+        stroke[1] = samples[1];
+        int strokeCount = 1;
+
+        float[] batch = new float[8];
+        for (int i = 1; i < count; i += 4) {
+            int batchCount = Math.min(4, count - i);
+            System.arraycopy(samples, i * 2, batch, 0, batchCount * 2);
+            int accepted = filter.filter(batch, batchCount);
+            System.arraycopy(batch, 0, stroke, strokeCount * 2, accepted * 2);
+            strokeCount += accepted;
+        }
+        float[] last = new float[2];
+        if (filter.finish(last)) {
+            stroke[strokeCount * 2] = last[0];
+            stroke[strokeCount * 2 + 1] = last[1];
+            strokeCount++;
+        }
+        outCount[0] = StrokeFilter.simplify(stroke, strokeCount, TOLERANCE);
+        return stroke;
+    }
+
+    private static float distanceToSegment(float x, float y, float x1, float y1, float x2, float y2) {
+        float dx = x2 - x1;
+        float dy = y2 - y1;
+        float lengthSquared = dx * dx + dy * dy;
+        float t = lengthSquared == 0 ? 0 : Math.max(0, Math.min(1, ((x - x1) * dx + (y - y1) * dy) / lengthSquared));
+        float px = x1 + t * dx - x;
+        float py = y1 + t * dy - y;
+        return (float) Math.sqrt(px * px + py * py);
+    }
+
+    // Наибольшее отклонение исходных сэмплов от итоговой ломаной
+    private static float maxDeviation(float[] samples, int count, float[] stroke, int strokeCount) {
+        float max = 0;
+        for (int i = 0; i < count; i++) {
+            float best = Float.MAX_VALUE;
+            for (int j = 0; j < strokeCount - 1; j++) {
+                best = Math.min(best, distanceToSegment(samples[i * 2], samples[i * 2 + 1],
+                        stroke[j * 2], stroke[j * 2 + 1], stroke[j * 2 + 2], stroke[j * 2 + 3]));
+            }
+            max = Math.max(max, best);
+        }
+        return max;
+    }
+
+    @Test
+    public void denseStraightStroke_collapsesToEndpoints() {
+        int count = 1000;
+        float[] samples = new float[count * 2];
+        for (int i = 0; i < count; i++) {
+            samples[i * 2] = 10 + i * 0.3f;
+            samples[i * 2 + 1] = 20 + i * 0.1f;
+        }
+        int[] strokeCount = new int[1];
+        float[] stroke = process(samples, count, strokeCount);
+
+        assertEquals(2, strokeCount[0]);
+        assertEquals(samples[0], stroke[0], 0f);
+        assertEquals(samples[(count - 1) * 2], stroke[2], 0f);
+        assertEquals(samples[(count - 1) * 2 + 1], stroke[3], 0f);
+    }
+
+    @Test
+    public void curvedStroke_dropsMostPointsWithinTolerance() {
+        // Дуга радиусом 200 с сэмплами через 0.4 пикселя, как при медленном движении на 240 Гц
+        int count = 2500;
+        float[] samples = new float[count * 2];
+        for (int i = 0; i < count; i++) {
+            double angle = i * 0.4 / 200;
+            samples[i * 2] = (float) (300 + 200 * Math.cos(angle));
+            samples[i * 2 + 1] = (float) (300 + 200 * Math.sin(angle));
+        }
+        int[] strokeCount = new int[1];
+        float[] stroke = process(samples, count, strokeCount);
+
+        assertTrue("Слишком много точек: " + strokeCount[0], strokeCount[0] * 10 <= count);
+        float deviation = maxDeviation(samples, count, stroke, strokeCount[0]);
+        assertTrue("Отклонение " + deviation, deviation <= TOLERANCE + MIN_DISTANCE / 2);
+    }
+
+    @Test
+    public void simplify_keepsCorners() {
+        float[] points = {0, 0, 50, 0.2f, 100, 0, 100, 50, 100.1f, 100};
+        int count = StrokeFilter.simplify(points, 5, TOLERANCE);
+
+        assertEquals(3, count);
+        assertArrayEquals(new float[]{0, 0, 100, 0, 100.1f, 100}, Arrays.copyOf(points, 6), 0f);
+    }
+
+    @Test
+    public void finish_returnsLastDroppedSample() {
+        StrokeFilter filter = new StrokeFilter();
+        filter.reset(0, 0, MIN_DISTANCE);
+        float[] samples = {10, 0, 10.5f, 0};
+        assertEquals(1, filter.filter(samples, 2));
+
+        float[] last = new float[2];
+        assertTrue(filter.finish(last));
+        assertEquals(10.5f, last[0], 0f);
+        assertFalse(filter.finish(last));
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.imageeditor.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class MipmapPyramidTest {
+
+    @Test
+    public void levelForScale_keepsLevelPixelsNotSmallerThanScreenPixels() {
+        assertEquals(0, MipmapPyramid.levelForScale(4f));
+        assertEquals(0, MipmapPyramid.levelForScale(1f));
+        assertEquals(0, MipmapPyramid.levelForScale(0.51f));
+        assertEquals(1, MipmapPyramid.levelForScale(0.5f));
+        assertEquals(1, MipmapPyramid.levelForScale(0.3f));
+        assertEquals(2, MipmapPyramid.levelForScale(0.25f));
+        assertEquals(3, MipmapPyramid.levelForScale(0.1f));
+    }
+
+    @Test
+    public void levelCount_stopsBeforeSmallestSideDropsBelowMinimum() {
+        assertEquals(1, MipmapPyramid.levelCount(40, 40));
+        assertEquals(2, MipmapPyramid.levelCount(64, 64));
+        assertEquals(2, MipmapPyramid.levelCount(127, 4000));
+        assertEquals(8, MipmapPyramid.levelCount(4096, 4096));
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.imageeditor.utils;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class OrthogonalTransformTest {
+    // Размеры не кратны блоку, чтобы проверить неполные блоки по краям
+    private static final int WIDTH = 203;
+    private static final int HEIGHT = 131;
+
+    private static int[] randomPixels(int count) {
+        Random random = new Random(42);
+        int[] pixels = new int[count];
+        for (int i = 0; i < count; i++) {
+            pixels[i] = random.nextInt();
+        }
+        return pixels;
+    }
+
+    @Test
+    public void rotate90_smallMatrix() {
+        // 1 2 3       4 1
+        // 4 5 6  ->   5 2
+        //             6 3
+        int[] src = {1, 2, 3, 4, 5, 6};
+        int[] dst = new int[6];
+        OrthogonalTransform.rotate90(src, 0, 3, 2, dst, 0);
+        assertArrayEquals(new int[]{4, 1, 5, 2, 6, 3}, dst);
+    }
+
+    @Test
+    public void rotate270_smallMatrix() {
+        // 1 2 3       3 6
+        // 4 5 6  ->   2 5
+        //             1 4
+        int[] src = {1, 2, 3, 4, 5, 6};
+        int[] dst = new int[6];
+        OrthogonalTransform.rotate270(src, 0, 3, 2, dst, 0);
+        assertArrayEquals(new int[]{3, 6, 2, 5, 1, 4}, dst);
+    }
+
+    @Test
+    public void rotate90_matchesPerPixelMapping() {
+        int[] src = randomPixels(WIDTH * HEIGHT);
+        int[] dst = new int[WIDTH * HEIGHT];
+        OrthogonalTransform.rotate90(src, 0, WIDTH, HEIGHT, dst, 0);
+
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                assertEquals(src[y * WIDTH + x], dst[x * HEIGHT + (HEIGHT - 1 - y)]);
+            }
+        }
+    }
+
+    @Test
+    public void rotate90ThenRotate270_isIdentity() {
+        int[] src = randomPixels(WIDTH * HEIGHT);
+        int[] rotated = new int[WIDTH * HEIGHT];
+        int[] restored = new int[WIDTH * HEIGHT];
+        OrthogonalTransform.rotate90(src, 0, WIDTH, HEIGHT, rotated, 0);
+        OrthogonalTransform.rotate270(rotated, 0, HEIGHT, WIDTH, restored, 0);
+        assertArrayEquals(src, restored);
+    }
+
+    @Test
+    public void rotate_respectsOffsets() {
+        int[] buffer = new int[4 + 6 + 6];
+        System.arraycopy(new int[]{1, 2, 3, 4, 5, 6}, 0, buffer, 4, 6);
+        OrthogonalTransform.rotate90(buffer, 4, 3, 2, buffer, 10);
+        int[] rotated = new int[6];
+        System.arraycopy(buffer, 10, rotated, 0, 6);
+        assertArrayEquals(new int[]{4, 1, 5, 2, 6, 3}, rotated);
+    }
+
+    @Test
+    public void reverseRows_flipsEachRowHorizontally() {
+        int[] pixels = {1, 2, 3, 4, 5, 6, 7, 8};
+        OrthogonalTransform.reverseRows(pixels, 4, 2);
+        assertArrayEquals(new int[]{4, 3, 2, 1, 8, 7, 6, 5}, pixels);
+    }
+
+    @Test
+    public void reverseWholeBand_equalsRotate180() {
+        int[] src = randomPixels(WIDTH * HEIGHT);
+        int[] rotated = src.clone();
+        OrthogonalTransform.reverse(rotated, 0, rotated.length);
+
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                assertEquals(src[y * WIDTH + x], rotated[(HEIGHT - 1 - y) * WIDTH + (WIDTH - 1 - x)]);
+            }
+        }
+    }
+}